@@ -156,7 +156,7 @@ SET FOREIGN_KEY_CHECKS=0;
 TRUNCATE TABLE geohash_index;
 TRUNCATE TABLE change_log;
 TRUNCATE TABLE business;
-TRUNCATE TABLE business_id_sequence;
+DELETE FROM id_block_sequence WHERE name = 'business';
 SET FOREIGN_KEY_CHECKS=1;
 SQL
 fi
@@ -244,12 +244,9 @@ INSERT IGNORE INTO geohash_index (geohash, business_id)
 SELECT TRIM(TRAILING '\r' FROM geohash), business_id
 FROM staging_geohash_index;
 
-DELETE FROM business_id_sequence;
 SET @next_id = (SELECT COALESCE(MAX(id), 0) + 1 FROM business);
-SET @sql_sequence = CONCAT('ALTER TABLE business_id_sequence AUTO_INCREMENT = ', @next_id);
-PREPARE stmt_sequence FROM @sql_sequence;
-EXECUTE stmt_sequence;
-DEALLOCATE PREPARE stmt_sequence;
+INSERT INTO id_block_sequence (name, next_value) VALUES ('business', @next_id)
+ON DUPLICATE KEY UPDATE next_value = GREATEST(next_value, VALUES(next_value));
 
 COMMIT;
 SQL
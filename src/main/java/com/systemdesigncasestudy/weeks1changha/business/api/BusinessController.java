@@ -1,13 +1,18 @@
 package com.systemdesigncasestudy.weeks1changha.business.api;
 
+import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessBulkImportResponse;
 import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessCreateRequest;
 import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessCreatedResponse;
 import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessResponse;
 import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessUpdateRequest;
+import com.systemdesigncasestudy.weeks1changha.business.service.BusinessBulkImporter;
 import com.systemdesigncasestudy.weeks1changha.business.service.BusinessService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
+import java.io.IOException;
+import java.io.InputStream;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -25,9 +30,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class BusinessController {
 
     private final BusinessService businessService;
+    private final BusinessBulkImporter businessBulkImporter;
 
-    public BusinessController(BusinessService businessService) {
+    public BusinessController(BusinessService businessService, BusinessBulkImporter businessBulkImporter) {
         this.businessService = businessService;
+        this.businessBulkImporter = businessBulkImporter;
     }
 
     @GetMapping("/{id}")
@@ -41,6 +48,15 @@ public class BusinessController {
         return ResponseEntity.status(HttpStatus.CREATED).body(new BusinessCreatedResponse(id));
     }
 
+    /**
+     * Bulk create from an NDJSON body, one create request per line. The body is streamed,
+     * not buffered, so uploads of any size are fine.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BusinessBulkImportResponse bulkCreate(InputStream body) throws IOException {
+        return businessBulkImporter.importNdjson(body);
+    }
+
     @PutMapping("/{id}")
     public BusinessResponse update(
         @PathVariable("id") @Positive long id,
@@ -0,0 +1,4 @@
+package com.systemdesigncasestudy.weeks1changha.business.dto;
+
+public record BusinessBulkImportError(long line, String message) {
+}
@@ -0,0 +1,16 @@
+package com.systemdesigncasestudy.weeks1changha.business.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of an NDJSON bulk import. {@code errors} holds at most the first few rejected
+ * lines; {@code completed} is false when a batch failed and the import stopped there.
+ */
+public record BusinessBulkImportResponse(
+    long received,
+    long created,
+    long rejected,
+    boolean completed,
+    List<BusinessBulkImportError> errors
+) {
+}
@@ -3,6 +3,7 @@ package com.systemdesigncasestudy.weeks1changha.business.repository;
 import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface BusinessRepository {
@@ -11,7 +12,27 @@ public interface BusinessRepository {
 
     Business save(Business business);
 
+    /**
+     * Saves many businesses in one batch.
+     */
+    void saveAll(List<Business> businesses);
+
     Optional<Business> findById(long id);
 
     List<Business> findAllByIds(Collection<Long> ids);
+
+    /**
+     * Up to {@code limit} businesses with an id above {@code afterId}, in id order.
+     */
+    List<Business> findAfter(long afterId, int limit);
+
+    /**
+     * Highest business id handed out so far, including ids that were never saved; 0 if none.
+     */
+    long maxAllocatedId();
+
+    /**
+     * Number of active businesses per geohash prefix of the given length.
+     */
+    Map<String, Integer> countActiveByGeohashPrefix(int prefixLength);
 }
@@ -3,7 +3,10 @@ package com.systemdesigncasestudy.weeks1changha.business.repository;
 import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -28,6 +31,13 @@ public class InMemoryBusinessRepository implements BusinessRepository {
         return business;
     }
 
+    @Override
+    public void saveAll(List<Business> businesses) {
+        for (Business business : businesses) {
+            store.put(business.id(), business);
+        }
+    }
+
     @Override
     public Optional<Business> findById(long id) {
         return Optional.ofNullable(store.get(id));
@@ -44,4 +54,30 @@ public class InMemoryBusinessRepository implements BusinessRepository {
         }
         return result;
     }
+
+    @Override
+    public List<Business> findAfter(long afterId, int limit) {
+        return store.values().stream()
+                .filter(business -> business.id() > afterId)
+                .sorted(Comparator.comparingLong(Business::id))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public long maxAllocatedId() {
+        long saved = store.keySet().stream().mapToLong(Long::longValue).max().orElse(0L);
+        return Math.max(sequence.get() - 1, saved);
+    }
+
+    @Override
+    public Map<String, Integer> countActiveByGeohashPrefix(int prefixLength) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Business business : store.values()) {
+            if (business.isActive()) {
+                counts.merge(business.geohash().substring(0, prefixLength), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
 }
@@ -2,66 +2,116 @@ package com.systemdesigncasestudy.weeks1changha.business.repository;
 
 import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
 import com.systemdesigncasestudy.weeks1changha.business.domain.BusinessStatus;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Profile("mysql")
 @Repository
 public class MysqlBusinessRepository implements BusinessRepository {
 
     private static final RowMapper<Business> BUSINESS_ROW_MAPPER = MysqlBusinessRepository::mapBusiness;
+    private static final String ID_SEQUENCE_NAME = "business";
+    private static final String UPSERT_SQL = """
+        INSERT INTO business (
+          id, owner_id, name, category, phone, address, latitude, longitude, geohash, status, created_at, updated_at
+        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+          owner_id = VALUES(owner_id),
+          name = VALUES(name),
+          category = VALUES(category),
+          phone = VALUES(phone),
+          address = VALUES(address),
+          latitude = VALUES(latitude),
+          longitude = VALUES(longitude),
+          geohash = VALUES(geohash),
+          status = VALUES(status),
+          updated_at = VALUES(updated_at)
+        """;
 
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate leaseTransaction;
+    private final int idBlockSize;
+    private volatile IdBlock idBlock = IdBlock.EXHAUSTED;
 
-    public MysqlBusinessRepository(JdbcTemplate jdbcTemplate) {
+    public MysqlBusinessRepository(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.business.id-block-size:1000}") int idBlockSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        // A lease must commit on its own: ids handed out from it survive a rolled-back caller
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.idBlockSize = idBlockSize;
     }
 
+    /**
+     * Hands out ids from a block leased from id_block_sequence (hi/lo). Within a block this is
+     * a single atomic increment; only the caller that exhausts a block leases the next one.
+     * Ids left in a block when the instance stops are skipped, never reused.
+     *
+     * Call this outside any transaction. The lease commits in a transaction of its own, so a
+     * caller that already holds a connection would need a second one, and callers waiting on
+     * the lease would keep theirs until the pool runs dry.
+     */
     @Override
     public long nextId() {
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> connection.prepareStatement(
-            "INSERT INTO business_id_sequence (id) VALUES (NULL)",
-            Statement.RETURN_GENERATED_KEYS
-        ), keyHolder);
-        Number key = keyHolder.getKey();
-        if (key == null) {
-            throw new IllegalStateException("failed to allocate business id");
+        while (true) {
+            IdBlock block = idBlock;
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            synchronized (this) {
+                if (idBlock == block) {
+                    idBlock = leaseIdBlock();
+                }
+            }
         }
-        return key.longValue();
+    }
+
+    private IdBlock leaseIdBlock() {
+        Long start = leaseTransaction.execute(status -> {
+            // LAST_INSERT_ID(expr) returns the pre-increment value to this connection only,
+            // so concurrent instances always get disjoint ranges from the row lock
+            int updated = jdbcTemplate.update(
+                "UPDATE id_block_sequence SET next_value = LAST_INSERT_ID(next_value) + ? WHERE name = ?",
+                idBlockSize,
+                ID_SEQUENCE_NAME
+            );
+            if (updated != 1) {
+                throw new IllegalStateException("id_block_sequence has no row for " + ID_SEQUENCE_NAME);
+            }
+            return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        });
+        if (start == null) {
+            throw new IllegalStateException("failed to allocate business id block");
+        }
+        return new IdBlock(start, start + idBlockSize);
     }
 
     @Override
     public Business save(Business business) {
-        jdbcTemplate.update("""
-            INSERT INTO business (
-              id, owner_id, name, category, phone, address, latitude, longitude, geohash, status, created_at, updated_at
-            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            ON DUPLICATE KEY UPDATE
-              owner_id = VALUES(owner_id),
-              name = VALUES(name),
-              category = VALUES(category),
-              phone = VALUES(phone),
-              address = VALUES(address),
-              latitude = VALUES(latitude),
-              longitude = VALUES(longitude),
-              geohash = VALUES(geohash),
-              status = VALUES(status),
-              updated_at = VALUES(updated_at)
-            """,
+        jdbcTemplate.update(
+            UPSERT_SQL,
             business.id(),
             business.ownerId(),
             business.name(),
@@ -78,6 +128,37 @@ public class MysqlBusinessRepository implements BusinessRepository {
         return business;
     }
 
+    @Override
+    public void saveAll(List<Business> businesses) {
+        if (businesses.isEmpty()) {
+            return;
+        }
+        // Rewritten into multi-row INSERTs by the driver (rewriteBatchedStatements)
+        jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                Business business = businesses.get(i);
+                statement.setLong(1, business.id());
+                statement.setLong(2, business.ownerId());
+                statement.setString(3, business.name());
+                statement.setString(4, business.category());
+                statement.setString(5, business.phone());
+                statement.setString(6, business.address());
+                statement.setDouble(7, business.latitude());
+                statement.setDouble(8, business.longitude());
+                statement.setString(9, business.geohash());
+                statement.setString(10, business.status().name());
+                statement.setTimestamp(11, Timestamp.from(business.createdAt()));
+                statement.setTimestamp(12, Timestamp.from(business.updatedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return businesses.size();
+            }
+        });
+    }
+
     @Override
     public Optional<Business> findById(long id) {
         List<Business> results = jdbcTemplate.query(
@@ -111,6 +192,55 @@ public class MysqlBusinessRepository implements BusinessRepository {
         return jdbcTemplate.query(sql, BUSINESS_ROW_MAPPER, params.toArray());
     }
 
+    @Override
+    public List<Business> findAfter(long afterId, int limit) {
+        return jdbcTemplate.query(
+            """
+                SELECT id, owner_id, name, category, phone, address, latitude, longitude, geohash, status, created_at, updated_at
+                FROM business
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+            """,
+            BUSINESS_ROW_MAPPER,
+            afterId,
+            limit
+        );
+    }
+
+    @Override
+    public long maxAllocatedId() {
+        // Rows saved with ids of their own (before the sequence existed) count as well
+        Long maxId = jdbcTemplate.queryForObject(
+            """
+                SELECT GREATEST(
+                    COALESCE((SELECT next_value - 1 FROM id_block_sequence WHERE name = ?), 0),
+                    COALESCE((SELECT MAX(id) FROM business), 0))
+            """,
+            Long.class,
+            ID_SEQUENCE_NAME
+        );
+        return maxId != null ? maxId : 0L;
+    }
+
+    @Override
+    public Map<String, Integer> countActiveByGeohashPrefix(int prefixLength) {
+        Map<String, Integer> counts = new HashMap<>();
+        jdbcTemplate.query(
+            """
+                SELECT LEFT(geohash, ?) AS cell, COUNT(*) AS businesses
+                FROM business
+                WHERE status = 'ACTIVE'
+                GROUP BY cell
+            """,
+            rs -> {
+                counts.put(rs.getString("cell"), rs.getInt("businesses"));
+            },
+            prefixLength
+        );
+        return counts;
+    }
+
     private static Business mapBusiness(ResultSet rs, int rowNum) throws SQLException {
         return new Business(
             rs.getLong("id"),
@@ -127,4 +257,17 @@ public class MysqlBusinessRepository implements BusinessRepository {
             rs.getTimestamp("updated_at").toInstant()
         );
     }
+
+    private static final class IdBlock {
+
+        private static final IdBlock EXHAUSTED = new IdBlock(0L, 0L);
+
+        private final AtomicLong next;
+        private final long end;
+
+        private IdBlock(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package com.systemdesigncasestudy.weeks1changha.business.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessBulkImportError;
+import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessBulkImportResponse;
+import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessCreateRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams an NDJSON body (one {@link BusinessCreateRequest} per line) into
+ * {@link BusinessService#createAll} in batches of {@code bulk-batch-size}. Memory stays
+ * bounded by one batch plus the first {@value #MAX_REPORTED_ERRORS} errors, whatever the
+ * size of the upload. Invalid lines are skipped and reported; a failing batch stops the
+ * import, and every batch before it stays committed.
+ */
+@Service
+public class BusinessBulkImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(BusinessBulkImporter.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final long PROGRESS_LOG_INTERVAL = 100_000L;
+
+    private final BusinessService businessService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+
+    public BusinessBulkImporter(
+            BusinessService businessService,
+            ObjectMapper objectMapper,
+            Validator validator,
+            @Value("${app.business.bulk-batch-size:1000}") int batchSize) {
+        this.businessService = businessService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+    }
+
+    public BusinessBulkImportResponse importNdjson(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<BusinessCreateRequest> batch = new ArrayList<>(batchSize);
+        List<BusinessBulkImportError> errors = new ArrayList<>();
+        long lineNumber = 0L;
+        long received = 0L;
+        long created = 0L;
+        long rejected = 0L;
+        long batchFirstLine = 1L;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            received++;
+            String problem;
+            try {
+                BusinessCreateRequest request = objectMapper.readValue(line, BusinessCreateRequest.class);
+                problem = validate(request);
+                if (problem == null) {
+                    if (batch.isEmpty()) {
+                        batchFirstLine = lineNumber;
+                    }
+                    batch.add(request);
+                }
+            } catch (JsonProcessingException e) {
+                problem = "invalid JSON";
+            }
+            if (problem != null) {
+                rejected++;
+                report(errors, lineNumber, problem);
+            }
+
+            if (batch.size() >= batchSize) {
+                try {
+                    created += businessService.createAll(batch).size();
+                } catch (RuntimeException e) {
+                    return abort(e, batch, batchFirstLine, received, created, rejected, errors);
+                }
+                batch.clear();
+            }
+            if (received % PROGRESS_LOG_INTERVAL == 0) {
+                log.info("Bulk import progress: {} lines received, {} created, {} rejected", received, created, rejected);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            try {
+                created += businessService.createAll(batch).size();
+            } catch (RuntimeException e) {
+                return abort(e, batch, batchFirstLine, received, created, rejected, errors);
+            }
+        }
+        log.info("Bulk import complete: {} lines received, {} created, {} rejected", received, created, rejected);
+        return new BusinessBulkImportResponse(received, created, rejected, true, errors);
+    }
+
+    private BusinessBulkImportResponse abort(
+            RuntimeException cause,
+            List<BusinessCreateRequest> batch,
+            long batchFirstLine,
+            long received,
+            long created,
+            long rejected,
+            List<BusinessBulkImportError> errors) {
+        log.error("Bulk import stopped at the batch starting on line {}", batchFirstLine, cause);
+        report(errors, batchFirstLine, "batch of " + batch.size() + " failed: " + cause.getMessage());
+        return new BusinessBulkImportResponse(received, created, rejected + batch.size(), false, errors);
+    }
+
+    private String validate(BusinessCreateRequest request) {
+        Set<ConstraintViolation<BusinessCreateRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static void report(List<BusinessBulkImportError> errors, long lineNumber, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new BusinessBulkImportError(lineNumber, message));
+        }
+    }
+}
@@ -9,14 +9,25 @@ import com.systemdesigncasestudy.weeks1changha.business.repository.BusinessRepos
 import com.systemdesigncasestudy.weeks1changha.cache.BusinessCache;
 import com.systemdesigncasestudy.weeks1changha.common.exception.NotFoundException;
 import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
 import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
 import com.systemdesigncasestudy.weeks1changha.indexsync.repository.ChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeEventQueue;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeLogWriteTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class BusinessService {
@@ -26,38 +37,96 @@ public class BusinessService {
     private final BusinessRepository businessRepository;
     private final ChangeLogRepository changeLogRepository;
     private final BusinessCache businessCache;
+    private final ChangeEventQueue changeEventQueue;
+    private final ChangeLogWriteTracker changeLogWrites;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<ChangeType, Timer> writeLatencyTimers = new EnumMap<>(ChangeType.class);
+    private final Map<ChangeType, Counter> commitCounters = new EnumMap<>(ChangeType.class);
+    private final Timer bulkCreateLatencyTimer;
+    private final Counter bulkCreatedCounter;
 
     public BusinessService(
             BusinessRepository businessRepository,
             ChangeLogRepository changeLogRepository,
-            BusinessCache businessCache) {
+            BusinessCache businessCache,
+            ChangeEventQueue changeEventQueue,
+            ChangeLogWriteTracker changeLogWrites,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
         this.businessRepository = businessRepository;
         this.changeLogRepository = changeLogRepository;
         this.businessCache = businessCache;
+        this.changeEventQueue = changeEventQueue;
+        this.changeLogWrites = changeLogWrites;
+        this.transactionTemplate = transactionTemplate;
+        for (ChangeType changeType : ChangeType.values()) {
+            String mutation = changeType.name().toLowerCase(Locale.ROOT);
+            writeLatencyTimers.put(changeType, Timer.builder("proximity.business.write.latency")
+                    .description("Latency of one business mutation, including its commit")
+                    .tag("mutation", mutation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            commitCounters.put(changeType, Counter.builder("proximity.business.write.commits")
+                    .description("Committed business mutation transactions")
+                    .tag("mutation", mutation)
+                    .register(meterRegistry));
+        }
+        this.bulkCreateLatencyTimer = Timer.builder("proximity.business.bulk.latency")
+                .description("Latency of one bulk-create batch, including its commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.bulkCreatedCounter = Counter.builder("proximity.business.bulk.created")
+                .description("Businesses created through bulk import")
+                .register(meterRegistry);
     }
 
     public long create(BusinessCreateRequest request) {
+        // Before the write transaction: a block lease takes its own connection
         long id = businessRepository.nextId();
-        Instant now = Instant.now();
-
-        Business business = new Business(
-                id,
-                request.ownerId(),
-                request.name(),
-                request.category(),
-                request.phone(),
-                request.address(),
-                request.latitude(),
-                request.longitude(),
-                GeohashUtils.encode(request.latitude(), request.longitude(), STORAGE_GEOHASH_PRECISION),
-                BusinessStatus.ACTIVE,
-                now,
-                now);
+        BusinessChangeEvent event = write(ChangeType.CREATED, () -> {
+            Business business = newBusiness(id, request, Instant.now());
+            businessRepository.save(business);
+            return changeLogRepository.append(business.id(), ChangeType.CREATED);
+        });
+        return event.businessId();
+    }
 
-        businessRepository.save(business);
-        changeLogRepository.append(id, ChangeType.CREATED);
-        businessCache.evict(id);
-        return id;
+    /**
+     * Creates a batch of businesses in one transaction: one batched insert for the rows, one
+     * for their change events, and a single push of all events after the commit.
+     */
+    public List<Long> createAll(List<BusinessCreateRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        Timer.Sample sample = Timer.start();
+        // Reserved before the write transaction: a block lease takes its own connection
+        long[] reservedIds = new long[requests.size()];
+        for (int i = 0; i < reservedIds.length; i++) {
+            reservedIds[i] = businessRepository.nextId();
+        }
+        List<Long> ids;
+        long ticket = changeLogWrites.begin();
+        try {
+            ids = transactionTemplate.execute(status -> {
+                Instant now = Instant.now();
+                List<Business> businesses = new ArrayList<>(requests.size());
+                List<Long> createdIds = new ArrayList<>(requests.size());
+                for (int i = 0; i < reservedIds.length; i++) {
+                    Business business = newBusiness(reservedIds[i], requests.get(i), now);
+                    businesses.add(business);
+                    createdIds.add(business.id());
+                }
+                businessRepository.saveAll(businesses);
+                changeEventQueue.publishAll(changeLogRepository.appendAll(createdIds, ChangeType.CREATED));
+                return createdIds;
+            });
+        } finally {
+            changeLogWrites.end(ticket);
+        }
+        sample.stop(bulkCreateLatencyTimer);
+        bulkCreatedCounter.increment(ids.size());
+        return ids;
     }
 
     public BusinessResponse update(long id, BusinessUpdateRequest request) {
@@ -78,9 +147,10 @@ public class BusinessService {
                 existing.createdAt(),
                 now);
 
-        businessRepository.save(updated);
-        changeLogRepository.append(id, ChangeType.UPDATED);
-        businessCache.evict(id);
+        write(ChangeType.UPDATED, () -> {
+            businessRepository.save(updated);
+            return changeLogRepository.append(id, ChangeType.UPDATED);
+        });
 
         return BusinessResponse.from(updated);
     }
@@ -101,9 +171,10 @@ public class BusinessService {
                 existing.createdAt(),
                 Instant.now());
 
-        businessRepository.save(deleted);
-        changeLogRepository.append(id, ChangeType.DELETED);
-        businessCache.evict(id);
+        write(ChangeType.DELETED, () -> {
+            businessRepository.save(deleted);
+            return changeLogRepository.append(id, ChangeType.DELETED);
+        });
     }
 
     public BusinessResponse getById(long id) {
@@ -158,6 +229,46 @@ public class BusinessService {
         return result;
     }
 
+    /**
+     * Runs one mutation as a single transaction, so the business row and its change_log row
+     * (the outbox) commit together, with one commit instead of one per statement. The event
+     * is pushed to the sync workers and the cache entry evicted only after the commit.
+     */
+    private BusinessChangeEvent write(ChangeType changeType, Supplier<BusinessChangeEvent> mutation) {
+        Timer.Sample sample = Timer.start();
+        BusinessChangeEvent event;
+        long ticket = changeLogWrites.begin();
+        try {
+            event = transactionTemplate.execute(status -> {
+                BusinessChangeEvent appended = mutation.get();
+                changeEventQueue.publish(appended);
+                return appended;
+            });
+        } finally {
+            changeLogWrites.end(ticket);
+        }
+        sample.stop(writeLatencyTimers.get(changeType));
+        commitCounters.get(changeType).increment();
+        businessCache.evict(event.businessId());
+        return event;
+    }
+
+    private static Business newBusiness(long id, BusinessCreateRequest request, Instant now) {
+        return new Business(
+                id,
+                request.ownerId(),
+                request.name(),
+                request.category(),
+                request.phone(),
+                request.address(),
+                request.latitude(),
+                request.longitude(),
+                GeohashUtils.encode(request.latitude(), request.longitude(), STORAGE_GEOHASH_PRECISION),
+                BusinessStatus.ACTIVE,
+                now,
+                now);
+    }
+
     private Business requireActive(long id) {
         return findActiveById(id)
                 .orElseThrow(() -> new NotFoundException("business not found: " + id));
@@ -0,0 +1,161 @@
+package com.systemdesigncasestudy.weeks1changha.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntFunction;
+
+/**
+ * TTL cache bounded by total entry weight, backed by Caffeine.
+ *
+ * Caffeine evicts by W-TinyLFU, so a scan of one-off keys cannot flush the frequently used
+ * entries, and expires each entry after the TTL it was put with. Its statistics feed the
+ * {@link CacheMetrics} callbacks; only evictions to stay within the bound count as evictions.
+ */
+public class BoundedExpiringCache<K, V> implements TtlCache<K, V> {
+
+    private final Cache<K, Weighted<V>> cache;
+    private final long maxWeight;
+    private final ToIntFunction<V> weigher;
+
+    public BoundedExpiringCache(long maxWeight, ToIntFunction<V> weigher, CacheMetrics metrics) {
+        this(maxWeight, weigher, metrics, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs Caffeine's eviction and expiry maintenance; tests pass
+     *                 {@code Runnable::run} to have it done by the calling thread
+     */
+    BoundedExpiringCache(long maxWeight, ToIntFunction<V> weigher, CacheMetrics metrics, Executor executor) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((K key, Weighted<V> entry) -> entry.weight())
+                .expireAfter(new PerEntryTtl<K, V>())
+                .recordStats(() -> new MetricsStatsCounter(metrics))
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public Optional<V> get(K key) {
+        Weighted<V> entry = cache.getIfPresent(key);
+        return entry == null ? Optional.empty() : Optional.of(entry.value());
+    }
+
+    @Override
+    public void put(K key, V value, Duration ttl) {
+        int weight = weigher.applyAsInt(value);
+        if (weight > maxWeight) {
+            // Could never fit; drop any older value instead of serving it
+            cache.invalidate(key);
+            return;
+        }
+        cache.put(key, new Weighted<>(value, weight, ttl.toNanos()));
+    }
+
+    @Override
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public long weight() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    private record Weighted<V>(V value, int weight, long ttlNanos) {
+    }
+
+    /**
+     * Expires an entry {@code ttlNanos} after it was put; reads do not extend it.
+     */
+    private static final class PerEntryTtl<K, V> implements Expiry<K, Weighted<V>> {
+
+        @Override
+        public long expireAfterCreate(K key, Weighted<V> entry, long currentTime) {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, Weighted<V> entry, long currentTime, long currentDuration) {
+            return entry.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(K key, Weighted<V> entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static final class MetricsStatsCounter implements StatsCounter {
+
+        private final CacheMetrics metrics;
+
+        private MetricsStatsCounter(CacheMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void recordHits(int count) {
+            for (int i = 0; i < count; i++) {
+                metrics.recordHit();
+            }
+        }
+
+        @Override
+        public void recordMisses(int count) {
+            for (int i = 0; i < count; i++) {
+                metrics.recordMiss();
+            }
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadTime) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadTime) {
+        }
+
+        @Override
+        public void recordEviction(int weight, RemovalCause cause) {
+            if (cause == RemovalCause.SIZE) {
+                metrics.recordEviction();
+            }
+        }
+
+        @Override
+        public CacheStats snapshot() {
+            // The counts live in Micrometer
+            return CacheStats.empty();
+        }
+    }
+}
@@ -9,10 +9,14 @@ import org.springframework.stereotype.Component;
 @Component
 public class BusinessCache {
 
-    private final ExpiringCache<Long, Business> cache = new ExpiringCache<>();
+    private final TtlCache<Long, Business> cache;
     private final Duration ttl;
 
-    public BusinessCache(@Value("${app.cache.business-ttl-seconds:3600}") long ttlSeconds) {
+    public BusinessCache(
+            CacheFactory cacheFactory,
+            @Value("${app.cache.business-ttl-seconds:3600}") long ttlSeconds,
+            @Value("${app.cache.business-max-entries:100000}") long maxEntries) {
+        this.cache = cacheFactory.create("business", maxEntries, business -> 1);
         this.ttl = Duration.ofSeconds(ttlSeconds);
     }
 
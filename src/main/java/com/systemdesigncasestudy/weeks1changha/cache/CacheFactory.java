@@ -0,0 +1,54 @@
+package com.systemdesigncasestudy.weeks1changha.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToIntFunction;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the application's TTL caches with Micrometer metrics and sweeps their expired
+ * entries in the background.
+ */
+@Component
+public class CacheFactory {
+
+    private final MeterRegistry meterRegistry;
+    private final List<TtlCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    public CacheFactory(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns a cache bounded to {@code maxWeight} (as measured by {@code weigher}),
+     * or an unbounded one when {@code maxWeight} is 0 or less.
+     */
+    public <K, V> TtlCache<K, V> create(String name, long maxWeight, ToIntFunction<V> weigher) {
+        CacheMetrics metrics = CacheMetrics.micrometer(name, meterRegistry);
+        TtlCache<K, V> cache;
+        if (maxWeight > 0) {
+            BoundedExpiringCache<K, V> bounded = new BoundedExpiringCache<>(maxWeight, weigher, metrics);
+            Gauge.builder("proximity.cache.weight", bounded, BoundedExpiringCache::weight)
+                    .description("Total weight of cached entries")
+                    .tag("cache", name)
+                    .register(meterRegistry);
+            cache = bounded;
+        } else {
+            cache = new ExpiringCache<>(metrics);
+        }
+        Gauge.builder("proximity.cache.size", cache, TtlCache::size)
+                .description("Number of cached entries")
+                .tag("cache", name)
+                .register(meterRegistry);
+        caches.add(cache);
+        return cache;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.sweep-delay-ms:30000}")
+    public void sweepExpired() {
+        caches.forEach(TtlCache::cleanUp);
+    }
+}
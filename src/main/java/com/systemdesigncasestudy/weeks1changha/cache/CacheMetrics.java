@@ -0,0 +1,66 @@
+package com.systemdesigncasestudy.weeks1changha.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hit/miss/eviction callbacks of one named cache.
+ */
+public interface CacheMetrics {
+
+    CacheMetrics NONE = new CacheMetrics() {
+        @Override
+        public void recordHit() {
+        }
+
+        @Override
+        public void recordMiss() {
+        }
+
+        @Override
+        public void recordEviction() {
+        }
+    };
+
+    void recordHit();
+
+    void recordMiss();
+
+    /**
+     * Counts an entry dropped to stay within the size bound (not expiry or invalidation).
+     */
+    void recordEviction();
+
+    static CacheMetrics micrometer(String cacheName, MeterRegistry meterRegistry) {
+        Counter hits = Counter.builder("proximity.cache.requests")
+                .description("Cache lookups")
+                .tag("cache", cacheName)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        Counter misses = Counter.builder("proximity.cache.requests")
+                .description("Cache lookups")
+                .tag("cache", cacheName)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Counter evictions = Counter.builder("proximity.cache.evictions")
+                .description("Entries evicted to stay within the cache bound")
+                .tag("cache", cacheName)
+                .register(meterRegistry);
+        return new CacheMetrics() {
+            @Override
+            public void recordHit() {
+                hits.increment();
+            }
+
+            @Override
+            public void recordMiss() {
+                misses.increment();
+            }
+
+            @Override
+            public void recordEviction() {
+                evictions.increment();
+            }
+        };
+    }
+}
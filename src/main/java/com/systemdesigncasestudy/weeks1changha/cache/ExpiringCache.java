@@ -4,37 +4,67 @@ import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
-public class ExpiringCache<K, V> {
+/**
+ * Unbounded TTL cache; see {@link BoundedExpiringCache} for the size-bounded variant.
+ */
+public class ExpiringCache<K, V> implements TtlCache<K, V> {
 
     private final ConcurrentHashMap<K, Entry<V>> store = new ConcurrentHashMap<>();
+    private final CacheMetrics metrics;
 
+    public ExpiringCache() {
+        this(CacheMetrics.NONE);
+    }
+
+    public ExpiringCache(CacheMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
     public Optional<V> get(K key) {
         Entry<V> entry = store.get(key);
         if (entry == null) {
+            metrics.recordMiss();
             return Optional.empty();
         }
 
         if (System.currentTimeMillis() >= entry.expiresAtEpochMs) {
             store.remove(key, entry);
+            metrics.recordMiss();
             return Optional.empty();
         }
 
+        metrics.recordHit();
         return Optional.of(entry.value);
     }
 
+    @Override
     public void put(K key, V value, Duration ttl) {
         long expiresAt = System.currentTimeMillis() + ttl.toMillis();
         store.put(key, new Entry<>(value, expiresAt));
     }
 
+    @Override
     public void invalidate(K key) {
         store.remove(key);
     }
 
+    @Override
     public void clear() {
         store.clear();
     }
 
+    @Override
+    public void cleanUp() {
+        long now = System.currentTimeMillis();
+        store.entrySet().removeIf(e -> now >= e.getValue().expiresAtEpochMs);
+    }
+
+    @Override
+    public long size() {
+        return store.size();
+    }
+
     private record Entry<V>(V value, long expiresAtEpochMs) {
     }
 }
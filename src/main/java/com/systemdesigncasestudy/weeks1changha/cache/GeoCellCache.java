@@ -1,30 +1,97 @@
 package com.systemdesigncasestudy.weeks1changha.cache;
 
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
 import java.time.Duration;
-import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Indexed (id, latitude, longitude) tuples per geohash cell, so nearby searches can filter
+ * and sort locally instead of querying the geo index. Cells are cached at precisions
+ * {@code min-precision}..{@value #MAX_PRECISION}; a cell holding more than {@code max-points}
+ * businesses is cached as {@link #OVERSIZED} so searches there go straight to the geo index.
+ * The cache is bounded by the total number of cached points ({@code geo-cell-max-weight}).
+ */
 @Component
 public class GeoCellCache {
 
-    private final ExpiringCache<String, List<Long>> cache = new ExpiringCache<>();
+    public static final int MAX_PRECISION = 7;
+
+    /** Most cells a search reads; picks the precision for the search radius. */
+    public static final int MAX_CELLS_PER_SEARCH = 16;
+
+    /** Marker for cells too dense to cache; compared by identity. */
+    public static final GeoPoints OVERSIZED = new GeoPoints(new long[0], new double[0], new double[0]);
+
+    private final TtlCache<String, GeoPoints> cache;
+    private final AtomicLong evictions = new AtomicLong();
     private final Duration ttl;
+    private final int minPrecision;
+    private final int maxPoints;
 
-    public GeoCellCache(@Value("${app.cache.geo-ttl-seconds:300}") long ttlSeconds) {
+    public GeoCellCache(
+            CacheFactory cacheFactory,
+            @Value("${app.cache.geo-ttl-seconds:300}") long ttlSeconds,
+            @Value("${app.cache.geo-cell-min-precision:5}") int minPrecision,
+            @Value("${app.cache.geo-cell-max-points:20000}") int maxPoints,
+            @Value("${app.cache.geo-cell-max-weight:2000000}") long maxWeight) {
+        this.cache = cacheFactory.create("geo-cell", maxWeight, points -> points.size() + 1);
         this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.minPrecision = minPrecision;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Cell precision to use for a search, or 0 when covering the circle with at most
+     * {@value #MAX_CELLS_PER_SEARCH} cells needs cells coarser than the minimum cached precision.
+     */
+    public int precisionFor(double latitude, double longitude, double radiusMeters) {
+        int precision = GeohashUtils.precisionForCircle(
+                latitude, longitude, radiusMeters, MAX_PRECISION, MAX_CELLS_PER_SEARCH);
+        return precision >= minPrecision ? precision : 0;
+    }
+
+    public int maxPoints() {
+        return maxPoints;
+    }
+
+    public Optional<GeoPoints> get(String cell) {
+        return cache.get(cell);
+    }
+
+    /**
+     * Stamp to take before loading a cell from the geo index; see {@link #putIfUnchanged}.
+     */
+    public long stamp() {
+        return evictions.get();
     }
 
-    public Optional<List<Long>> get(String key) {
-        return cache.get(key);
+    /**
+     * Caches a loaded cell unless an eviction happened since {@code stamp} was taken,
+     * in which case the load may predate that change and is dropped.
+     */
+    public void putIfUnchanged(String cell, GeoPoints points, long stamp) {
+        cache.put(cell, points, ttl);
+        if (evictions.get() != stamp) {
+            cache.invalidate(cell);
+        }
     }
 
-    public void put(String key, List<Long> businessIds) {
-        cache.put(key, businessIds, ttl);
+    /**
+     * Evicts every cached cell containing the given position.
+     */
+    public void evictAt(double latitude, double longitude) {
+        evictions.incrementAndGet();
+        for (int precision = minPrecision; precision <= MAX_PRECISION; precision++) {
+            cache.invalidate(GeohashUtils.encode(latitude, longitude, precision));
+        }
     }
 
     public void clear() {
+        evictions.incrementAndGet();
         cache.clear();
     }
 }
@@ -0,0 +1,38 @@
+package com.systemdesigncasestudy.weeks1changha.cache;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoHits;
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Distance-sorted candidate snapshots of recent nearby searches, keyed by query fingerprint,
+ * so that cursor pages after the first one resume from the snapshot instead of re-running
+ * the radius query.
+ */
+@Component
+public class SearchSnapshotCache {
+
+    private final TtlCache<String, Snapshot> cache;
+    private final Duration ttl;
+
+    public SearchSnapshotCache(
+            CacheFactory cacheFactory,
+            @Value("${app.cache.search-snapshot-ttl-seconds:60}") long ttlSeconds,
+            @Value("${app.cache.search-snapshot-max-weight:1000000}") long maxWeight) {
+        this.cache = cacheFactory.create("search-snapshot", maxWeight, snapshot -> snapshot.hits().size() + 1);
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    public Optional<Snapshot> get(String fingerprint) {
+        return cache.get(fingerprint);
+    }
+
+    public void put(String fingerprint, Snapshot snapshot) {
+        cache.put(fingerprint, snapshot, ttl);
+    }
+
+    public record Snapshot(GeoHits hits, int total) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.systemdesigncasestudy.weeks1changha.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Key-value cache whose entries expire after a per-entry TTL.
+ */
+public interface TtlCache<K, V> {
+
+    Optional<V> get(K key);
+
+    void put(K key, V value, Duration ttl);
+
+    void invalidate(K key);
+
+    void clear();
+
+    /**
+     * Drops expired entries eagerly instead of waiting for them to be read.
+     */
+    void cleanUp();
+
+    long size();
+}
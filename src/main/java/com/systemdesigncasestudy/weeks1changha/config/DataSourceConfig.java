@@ -1,9 +1,16 @@
 package com.systemdesigncasestudy.weeks1changha.config;
 
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexShard;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexShards;
 import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,8 +20,16 @@ import org.springframework.jdbc.core.JdbcTemplate;
 
 @Configuration
 @Profile("mysql")
+@EnableConfigurationProperties(GeohashIndexProperties.class)
 public class DataSourceConfig {
 
+    private static final String DEFAULT_SHARD = "primary";
+    // Without app.geohash-index.scatter-threads: one scatter thread per connection of a shard
+    // pool (maximum-pool-size 50) for every shard beyond the first; more would only wait for one
+    private static final int DEFAULT_SCATTER_THREADS_PER_SHARD = 50;
+    // Table names are formatted into SQL
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z0-9_]+");
+
     @Bean(name = "primaryDataSource")
     @Primary
     public DataSource primaryDataSource(
@@ -31,21 +46,6 @@ public class DataSourceConfig {
                 .build();
     }
 
-    @Bean(name = "hotDataSource")
-    public DataSource hotDataSource(
-            @Value("${app.datasource.hot.jdbc-url}") String url,
-            @Value("${app.datasource.hot.username}") String username,
-            @Value("${app.datasource.hot.password}") String password,
-            @Value("${app.datasource.hot.driver-class-name}") String driverClassName) {
-        return DataSourceBuilder.create()
-                .type(HikariDataSource.class)
-                .url(url)
-                .username(username)
-                .password(password)
-                .driverClassName(driverClassName)
-                .build();
-    }
-
     @Bean
     @Primary
     @Qualifier("primaryJdbcTemplate")
@@ -53,9 +53,67 @@ public class DataSourceConfig {
         return new JdbcTemplate(dataSource);
     }
 
+    /**
+     * geohash_index shards from {@code app.geohash-index}; defaults to the single table
+     * geohash_index in the primary DB.
+     */
     @Bean
-    @Qualifier("hotJdbcTemplate")
-    public JdbcTemplate hotJdbcTemplate(@Qualifier("hotDataSource") DataSource dataSource) {
-        return new JdbcTemplate(dataSource);
+    public GeohashIndexShards geohashIndexShards(
+            GeohashIndexProperties properties,
+            @Qualifier("primaryJdbcTemplate") JdbcTemplate primaryJdbcTemplate) {
+        Map<String, GeohashIndexProperties.Shard> configured = properties.shards() == null
+                ? Map.of(DEFAULT_SHARD, new GeohashIndexProperties.Shard("geohash_index", null, null, null, null, null))
+                : properties.shards();
+        List<GeohashIndexShard> shards = new ArrayList<>();
+        List<HikariDataSource> pools = new ArrayList<>();
+        try {
+            configured.forEach((name, shard) -> {
+                if (shard.table() == null || !TABLE_NAME.matcher(shard.table()).matches()) {
+                    throw new IllegalStateException("Invalid table for geohash index shard '" + name + "': " + shard.table());
+                }
+                JdbcTemplate template = primaryJdbcTemplate;
+                if (shard.jdbcUrl() != null) {
+                    HikariDataSource pool = shardDataSource(name, shard);
+                    pools.add(pool);
+                    template = new JdbcTemplate(pool);
+                }
+                shards.add(new GeohashIndexShard(name, shard.table(), template));
+            });
+            String defaultShard = properties.defaultShard() != null ? properties.defaultShard() : DEFAULT_SHARD;
+            int scatterThreads = properties.scatterThreads() != null
+                    ? properties.scatterThreads()
+                    : DEFAULT_SCATTER_THREADS_PER_SHARD * (shards.size() - 1);
+            return new GeohashIndexShards(shards, defaultShard, scatterThreads, pools);
+        } catch (RuntimeException e) {
+            pools.forEach(HikariDataSource::close);
+            throw e;
+        }
+    }
+
+    private static HikariDataSource shardDataSource(String name, GeohashIndexProperties.Shard shard) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(shard.jdbcUrl())
+                .username(shard.username())
+                .password(shard.password())
+                .driverClassName(shard.driverClassName())
+                .build();
+        dataSource.setPoolName("geohash-index-" + name);
+        GeohashIndexProperties.Hikari hikari = shard.hikari();
+        if (hikari != null) {
+            if (hikari.maximumPoolSize() != null) {
+                dataSource.setMaximumPoolSize(hikari.maximumPoolSize());
+            }
+            if (hikari.minimumIdle() != null) {
+                dataSource.setMinimumIdle(hikari.minimumIdle());
+            }
+            if (hikari.connectionTimeout() != null) {
+                dataSource.setConnectionTimeout(hikari.connectionTimeout());
+            }
+            if (hikari.maxLifetime() != null) {
+                dataSource.setMaxLifetime(hikari.maxLifetime());
+            }
+        }
+        return dataSource;
     }
 }
@@ -0,0 +1,37 @@
+package com.systemdesigncasestudy.weeks1changha.config;
+
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Shard map of geohash_index ({@code app.geohash-index}): shard name to table and DB.
+ *
+ * A shard without {@code jdbc-url} is a table in the primary DB ({@code spring.datasource});
+ * every other shard gets its own Hikari pool. Geohashes outside every hot zone go to
+ * {@code default-shard}, the rest to the shard of their zone ({@code hot_zone_config.shard}).
+ *
+ * {@code scatter-threads} sizes the pool shared by every request querying more than one shard
+ * at once (each request runs its first shard itself); see {@code DataSourceConfig} for the default.
+ */
+@ConfigurationProperties("app.geohash-index")
+public record GeohashIndexProperties(String defaultShard, Map<String, Shard> shards, Integer scatterThreads) {
+
+    public record Shard(
+            String table,
+            String jdbcUrl,
+            String username,
+            String password,
+            String driverClassName,
+            Hikari hikari) {
+    }
+
+    /**
+     * Pool settings of a shard with its own DB; unset values keep the Hikari defaults.
+     */
+    public record Hikari(
+            Integer maximumPoolSize,
+            Integer minimumIdle,
+            Long connectionTimeout,
+            Long maxLifetime) {
+    }
+}
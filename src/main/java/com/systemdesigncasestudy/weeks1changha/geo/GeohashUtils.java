@@ -7,6 +7,7 @@ public final class GeohashUtils {
 
     private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
     private static final int[] BITS = {16, 8, 4, 2, 1};
+    private static final double METERS_PER_DEGREE = 111_320d;
 
     private GeohashUtils() {
     }
@@ -72,6 +73,102 @@ public final class GeohashUtils {
         return result;
     }
 
+    /**
+     * Cells of the given precision that overlap the latitude/longitude box. Boxes crossing
+     * the antimeridian are not split; their longitude range is clamped instead.
+     */
+    public static Set<String> cellsInBox(
+            double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, int precision) {
+        int totalBits = precision * 5;
+        double lonDelta = 360d / Math.pow(2, (totalBits + 1) / 2);
+        double latDelta = 180d / Math.pow(2, totalBits / 2);
+
+        long minLatIndex = (long) Math.floor((clampLatitude(minLatitude) + 90d) / latDelta);
+        long maxLatIndex = (long) Math.floor((clampLatitude(maxLatitude) + 90d) / latDelta);
+        long minLonIndex = (long) Math.floor((Math.max(-180d, minLongitude) + 180d) / lonDelta);
+        long maxLonIndex = (long) Math.floor((Math.min(179.999999d, maxLongitude) + 180d) / lonDelta);
+
+        Set<String> cells = new HashSet<>();
+        for (long latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++) {
+            for (long lonIndex = minLonIndex; lonIndex <= maxLonIndex; lonIndex++) {
+                // Encode the cell center so rounding at cell edges cannot pick a neighbor
+                cells.add(encode(-90d + (latIndex + 0.5d) * latDelta, -180d + (lonIndex + 0.5d) * lonDelta, precision));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Latitude/longitude box of a geohash cell; minimums are inclusive, maximums exclusive.
+     */
+    public static CellBounds bounds(String geohash) {
+        double[] latRange = {-90d, 90d};
+        double[] lonRange = {-180d, 180d};
+        boolean evenBit = true;
+
+        for (int i = 0; i < geohash.length(); i++) {
+            int ch = BASE32.indexOf(geohash.charAt(i));
+            if (ch < 0) {
+                throw new IllegalArgumentException("invalid geohash: " + geohash);
+            }
+            for (int bit : BITS) {
+                double[] range = evenBit ? lonRange : latRange;
+                double mid = (range[0] + range[1]) / 2;
+                if ((ch & bit) != 0) {
+                    range[0] = mid;
+                } else {
+                    range[1] = mid;
+                }
+                evenBit = !evenBit;
+            }
+        }
+
+        return new CellBounds(latRange[0], lonRange[0], latRange[1], lonRange[1]);
+    }
+
+    /**
+     * Finest precision (at most {@code maxPrecision}) at which the bounding box of the circle
+     * overlaps no more than {@code maxCells} cells, so the cells covering the circle are about
+     * its size rather than a few cells much larger than it. Returns 0 when precision-1 cells
+     * already exceed {@code maxCells} or the box reaches past a pole or the antimeridian.
+     */
+    public static int precisionForCircle(
+            double latitude, double longitude, double radiusMeters, int maxPrecision, int maxCells) {
+        CellBounds box = boxAround(latitude, longitude, radiusMeters);
+        if (box.minLatitude() < -90d || box.maxLatitude() >= 90d
+                || box.minLongitude() < -180d || box.maxLongitude() >= 180d) {
+            return 0;
+        }
+
+        for (int precision = maxPrecision; precision >= 1; precision--) {
+            int totalBits = precision * 5;
+            double lonDelta = 360d / Math.pow(2, (totalBits + 1) / 2);
+            double latDelta = 180d / Math.pow(2, totalBits / 2);
+            long rows = (long) Math.floor((box.maxLatitude() + 90d) / latDelta)
+                    - (long) Math.floor((box.minLatitude() + 90d) / latDelta) + 1;
+            long columns = (long) Math.floor((box.maxLongitude() + 180d) / lonDelta)
+                    - (long) Math.floor((box.minLongitude() + 180d) / lonDelta) + 1;
+            if (rows * columns <= maxCells) {
+                return precision;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Cells of the given precision overlapping the bounding box of the circle.
+     */
+    public static Set<String> cellsCoveringCircle(double latitude, double longitude, double radiusMeters, int precision) {
+        CellBounds box = boxAround(latitude, longitude, radiusMeters);
+        return cellsInBox(box.minLatitude(), box.minLongitude(), box.maxLatitude(), box.maxLongitude(), precision);
+    }
+
+    private static CellBounds boxAround(double latitude, double longitude, double radiusMeters) {
+        double latDelta = radiusMeters / METERS_PER_DEGREE;
+        double lonDelta = latDelta / Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+        return new CellBounds(latitude - latDelta, longitude - lonDelta, latitude + latDelta, longitude + lonDelta);
+    }
+
     private static double clampLatitude(double latitude) {
         return Math.max(-89.999999d, Math.min(89.999999d, latitude));
     }
@@ -86,4 +183,7 @@ public final class GeohashUtils {
         }
         return wrapped;
     }
+
+    public record CellBounds(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+    }
 }
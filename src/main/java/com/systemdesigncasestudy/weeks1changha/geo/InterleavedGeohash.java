@@ -0,0 +1,148 @@
+package com.systemdesigncasestudy.weeks1changha.geo;
+
+/**
+ * 52-bit integer geohash (26 bits per axis, latitude on even bits, longitude on odd bits).
+ * This is the layout Redis uses for GeoSet scores, so a geohash cell at any step maps to one
+ * contiguous score range.
+ */
+public final class InterleavedGeohash {
+
+    public static final int MAX_STEP = 26;
+
+    /** Full WGS84 latitude range, used by the in-process geo index. */
+    public static final InterleavedGeohash WGS84 = new InterleavedGeohash(-90d, 90d);
+
+    /** Latitude limits Redis applies to GeoSet members (Web Mercator). */
+    public static final InterleavedGeohash REDIS = new InterleavedGeohash(-85.05112878d, 85.05112878d);
+
+    private static final double METERS_PER_DEGREE = 111_320d;
+
+    private final double latMin;
+    private final double latSpan;
+
+    private InterleavedGeohash(double latMin, double latMax) {
+        this.latMin = latMin;
+        this.latSpan = latMax - latMin;
+    }
+
+    public long encode(double latitude, double longitude) {
+        return interleave(quantize(latitude, latMin, latSpan), quantize(longitude, -180d, 360d));
+    }
+
+    /**
+     * Returns the center cell and its eight neighbors at the finest step whose cell is still
+     * at least as large as the radius, so together they always cover the search circle.
+     */
+    public Covering cover(double latitude, double longitude, double radiusMeters) {
+        int step = estimateStep(latitude, radiusMeters);
+        int shift = 2 * (MAX_STEP - step);
+        long cellCount = 1L << step;
+        long latCell = quantize(latitude, latMin, latSpan) >>> (MAX_STEP - step);
+        long lonCell = quantize(longitude, -180d, 360d) >>> (MAX_STEP - step);
+
+        long[] cells = new long[9];
+        int count = 0;
+        for (long dLat = -1; dLat <= 1; dLat++) {
+            long neighborLat = latCell + dLat;
+            if (neighborLat < 0 || neighborLat >= cellCount) {
+                continue;
+            }
+            for (long dLon = -1; dLon <= 1; dLon++) {
+                long cell = interleave(neighborLat, Math.floorMod(lonCell + dLon, cellCount));
+                if (!contains(cells, count, cell)) {
+                    cells[count++] = cell;
+                }
+            }
+        }
+
+        long[] ranges = new long[count * 2];
+        for (int i = 0; i < count; i++) {
+            ranges[i * 2] = cells[i] << shift;
+            ranges[i * 2 + 1] = (cells[i] + 1) << shift;
+        }
+        return new Covering(step, ranges, cellAreaSquareMeters(step, latitude));
+    }
+
+    private int estimateStep(double latitude, double radiusMeters) {
+        double reachDegrees = radiusMeters / METERS_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(Math.min(90d, Math.abs(latitude) + reachDegrees)));
+        double lonMetersPerDegree = METERS_PER_DEGREE * Math.max(cosLat, 1e-6);
+
+        int step = MAX_STEP;
+        while (step > 1) {
+            double cellLatMeters = latSpan / (1L << step) * METERS_PER_DEGREE;
+            double cellLonMeters = 360d / (1L << step) * lonMetersPerDegree;
+            if (Math.min(cellLatMeters, cellLonMeters) >= radiusMeters) {
+                break;
+            }
+            step--;
+        }
+        return step;
+    }
+
+    private double cellAreaSquareMeters(int step, double latitude) {
+        double cellLatMeters = latSpan / (1L << step) * METERS_PER_DEGREE;
+        double cellLonMeters = 360d / (1L << step) * METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        return cellLatMeters * Math.abs(cellLonMeters);
+    }
+
+    private static long quantize(double value, double min, double span) {
+        long cells = 1L << MAX_STEP;
+        long cell = (long) ((value - min) / span * cells);
+        return Math.max(0L, Math.min(cells - 1, cell));
+    }
+
+    private static long interleave(long latBits, long lonBits) {
+        return spread(latBits) | (spread(lonBits) << 1);
+    }
+
+    private static long spread(long value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    private static boolean contains(long[] values, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Half-open key ranges [ranges[2i], ranges[2i + 1]) of the covering cells.
+     */
+    public record Covering(int step, long[] ranges, double cellAreaSquareMeters) {
+
+        public int cellCount() {
+            return ranges.length / 2;
+        }
+
+        public long from(int cell) {
+            return ranges[cell * 2];
+        }
+
+        public long to(int cell) {
+            return ranges[cell * 2 + 1];
+        }
+
+        /**
+         * Scales a count taken over the covering cells down to the search circle,
+         * assuming points are spread evenly inside the cells.
+         */
+        public int scaleToCircle(long cellsCount, double radiusMeters) {
+            double coveredArea = cellAreaSquareMeters * cellCount();
+            if (coveredArea <= 0d) {
+                return (int) Math.min(Integer.MAX_VALUE, cellsCount);
+            }
+            double ratio = Math.min(1d, Math.PI * radiusMeters * radiusMeters / coveredArea);
+            return (int) Math.min(Integer.MAX_VALUE, Math.round(cellsCount * ratio));
+        }
+    }
+}
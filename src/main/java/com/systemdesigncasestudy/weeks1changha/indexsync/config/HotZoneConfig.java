@@ -1,8 +1,12 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.config;
 
+/**
+ * @param shard geohash_index shard holding the zone's index rows ({@code app.geohash-index.shards})
+ */
 public record HotZoneConfig(
         String geohashPrefix,
         String description,
         int radiusLimit,
-        boolean isActive) {
+        boolean isActive,
+        String shard) {
 }
@@ -1,58 +1,180 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.config;
 
 import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlHotZoneConfigRepository;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Current hot zones, refreshed from hot_zone_config every minute.
+ *
+ * The shard routing they imply is recorded in hot_zone_routing. On startup and on every
+ * refresh it is compared with the recorded routing under a row lock, and a difference is
+ * recorded as a {@link ZoneMigration} in the same transaction, so a change made while no
+ * instance ran, or seen by several instances at once, is recorded exactly once. The pending
+ * migrations are reloaded on each refresh, so a restart keeps reading from the old shards
+ * until {@link com.systemdesigncasestudy.weeks1changha.indexsync.service.HotZoneMigrationJob}
+ * has moved the rows.
+ */
 @Service
 public class HotZoneConfigService {
 
     private static final Logger log = LoggerFactory.getLogger(HotZoneConfigService.class);
+    // Nothing recorded (first startup with this table): rows may sit anywhere, check them all
+    private static final List<String> EVERY_PREFIX = List.of("");
 
     private final MysqlHotZoneConfigRepository repository;
-    private final Map<String, HotZoneConfig> configCache = new ConcurrentHashMap<>();
+    private final TransactionTemplate transactionTemplate;
+    // Replaced wholesale on refresh, so readers see either the old or the new zones, never a mix
+    private volatile HotZoneTrie zones;
+    // Changes whose rows are not moved yet, oldest first; readers also look in their old shards
+    private volatile List<ZoneMigration> migrations;
 
-    public HotZoneConfigService(MysqlHotZoneConfigRepository repository) {
+    public HotZoneConfigService(MysqlHotZoneConfigRepository repository, TransactionTemplate transactionTemplate) {
         this.repository = repository;
-        refreshConfig(); // Initial load
+        this.transactionTemplate = transactionTemplate;
+        // Fails startup: without the zones every hot zone row would go to the default shard,
+        // and no later refresh could tell which rows to move back
+        HotZoneTrie loaded = loadZones();
+        recordRouting(loaded);
+        this.migrations = repository.findPendingMigrations();
+        this.zones = loaded;
+        log.info("Loaded Hot Zone Configs. Count: {}, pending migrations: {}", zones.size(), migrations.size());
     }
 
     @Scheduled(fixedRate = 60000) // Refresh every minute
     public void refreshConfig() {
         try {
-            List<HotZoneConfig> configs = repository.findAllActive();
-            Map<String, HotZoneConfig> newCache = configs.stream()
-                    .collect(Collectors.toMap(HotZoneConfig::geohashPrefix, c -> c));
-
-            configCache.clear();
-            configCache.putAll(newCache);
-            log.info("Refreshed Hot Zone Configs. Count: {}", configCache.size());
+            HotZoneTrie refreshed = loadZones();
+            recordRouting(refreshed);
+            // Reloaded before the swap, so no reader misses the rows left in the old shards
+            migrations = repository.findPendingMigrations();
+            zones = refreshed;
+            log.info("Refreshed Hot Zone Configs. Count: {}", zones.size());
         } catch (Exception e) {
             log.error("Failed to refresh Hot Zone Configs", e);
         }
     }
 
+    private void recordRouting(HotZoneTrie current) {
+        Map<String, String> routing = shardsByPrefix(current);
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<Map<String, String>> recorded = repository.findRecordedRoutingForUpdate();
+            if (recorded.isPresent() && recorded.get().equals(routing)) {
+                return;
+            }
+            List<String> changed = recorded.map(previous -> changedPrefixes(previous, routing)).orElse(EVERY_PREFIX);
+            if (!changed.isEmpty()) {
+                repository.insertMigration(recorded.orElse(routing), changed);
+                log.info("Hot Zone shard routing changed for {}, index rows will be migrated",
+                        recorded.isPresent() ? changed : "all prefixes (no routing recorded before)");
+            }
+            repository.saveRecordedRouting(routing);
+        });
+    }
+
+    private HotZoneTrie loadZones() {
+        List<HotZoneConfig> valid = new ArrayList<>();
+        for (HotZoneConfig config : repository.findAllActive()) {
+            if (HotZoneTrie.isValidPrefix(config.geohashPrefix())) {
+                valid.add(config);
+            } else {
+                log.warn("Ignoring Hot Zone Config with invalid prefix '{}' ({}-{} geohash characters expected)",
+                        config.geohashPrefix(), HotZoneTrie.MIN_PREFIX_LENGTH, HotZoneTrie.MAX_PREFIX_LENGTH);
+            }
+        }
+        return HotZoneTrie.of(valid);
+    }
+
+    /**
+     * Zone with the longest prefix of {@code geohash} (zones nest, e.g. {@code wyd} and {@code wydm}).
+     */
     public Optional<HotZoneConfig> findConfig(String geohash) {
-        if (geohash == null || geohash.length() < 4) {
+        if (geohash == null) {
             return Optional.empty();
         }
-        // Check for longest matching prefix first if needed,
-        // but currently we assume strictly 4-char prefix based on current design.
-        // For future flexibility, we can iterate prefixes of length 4, 5, 6...
+        return Optional.ofNullable(zones.longestMatch(geohash));
+    }
 
-        // Simple implementation: check 4-char prefix
-        String prefix = geohash.substring(0, 4);
-        return Optional.ofNullable(configCache.get(prefix));
+    /**
+     * Zones to route reads with: the current zones first, then the zones replaced by every
+     * pending migration, since rows of a changed zone stay in its old shard until moved.
+     */
+    public List<HotZoneTrie> zonesForReads() {
+        List<HotZoneTrie> readable = new ArrayList<>(1 + migrations.size());
+        readable.add(zones);
+        for (ZoneMigration migration : migrations) {
+            readable.add(migration.previous());
+        }
+        return readable;
+    }
+
+    /**
+     * Configuration changes whose rows are not moved yet, oldest first, as of the last refresh.
+     */
+    public List<ZoneMigration> pendingMigrations() {
+        return migrations;
+    }
+
+    /**
+     * Deletes a migration whose rows are all moved, if its cursor is still at {@code cursor},
+     * and stops reading from its old shards. Other instances stop on their next refresh.
+     */
+    public boolean completeMigration(ZoneMigration migration, ZoneMigration.Cursor cursor) {
+        if (!repository.deleteMigration(migration.id(), cursor)) {
+            return false;
+        }
+        List<ZoneMigration> remaining = new ArrayList<>(migrations);
+        remaining.removeIf(pending -> pending.id() == migration.id());
+        migrations = List.copyOf(remaining);
+        return true;
     }
 
     public boolean isHotZone(String geohash) {
-        return findConfig(geohash).isPresent();
+        return geohash != null && zones.longestMatch(geohash) != null;
+    }
+
+    /**
+     * Prefixes added, removed or moved to another shard; a prefix nested in another changed
+     * prefix is left out, as moving the outer one covers its rows.
+     */
+    private static List<String> changedPrefixes(Map<String, String> before, Map<String, String> after) {
+        Set<String> changed = new TreeSet<>();
+        for (String prefix : before.keySet()) {
+            if (!Objects.equals(before.get(prefix), after.get(prefix))) {
+                changed.add(prefix);
+            }
+        }
+        for (String prefix : after.keySet()) {
+            if (!Objects.equals(before.get(prefix), after.get(prefix))) {
+                changed.add(prefix);
+            }
+        }
+        List<String> outermost = new ArrayList<>();
+        for (String prefix : changed) {
+            // Sorted order puts a prefix right after any changed prefix it is nested in
+            if (outermost.isEmpty() || !prefix.startsWith(outermost.get(outermost.size() - 1))) {
+                outermost.add(prefix);
+            }
+        }
+        return outermost;
+    }
+
+    private static Map<String, String> shardsByPrefix(HotZoneTrie zones) {
+        Map<String, String> shards = new HashMap<>();
+        for (HotZoneConfig zone : zones.nestedIn("")) {
+            shards.put(zone.geohashPrefix(), zone.shard());
+        }
+        return shards;
     }
 }
@@ -0,0 +1,133 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable geohash prefix trie over the hot zones, for longest-prefix-match lookups.
+ * A lookup walks at most {@value #MAX_PREFIX_LENGTH} nodes and allocates nothing; a new
+ * configuration is published by building a new trie and swapping the reference.
+ */
+public final class HotZoneTrie {
+
+    public static final int MIN_PREFIX_LENGTH = 3;
+    public static final int MAX_PREFIX_LENGTH = 8;
+
+    public static final HotZoneTrie EMPTY = new HotZoneTrie(new Node(), 0);
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private final Node root;
+    private final int size;
+
+    private HotZoneTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Builds a trie of the given zones. Prefixes must be {@value #MIN_PREFIX_LENGTH} to
+     * {@value #MAX_PREFIX_LENGTH} geohash characters long.
+     */
+    public static HotZoneTrie of(Collection<HotZoneConfig> zones) {
+        Node root = new Node();
+        int size = 0;
+        for (HotZoneConfig zone : zones) {
+            String prefix = zone.geohashPrefix();
+            if (!isValidPrefix(prefix)) {
+                throw new IllegalArgumentException("invalid hot zone prefix: " + prefix);
+            }
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                int digit = digit(prefix.charAt(i));
+                if (node.children[digit] == null) {
+                    node.children[digit] = new Node();
+                }
+                node = node.children[digit];
+            }
+            if (node.zone == null) {
+                size++;
+            }
+            node.zone = zone;
+        }
+        return new HotZoneTrie(root, size);
+    }
+
+    public static boolean isValidPrefix(String prefix) {
+        if (prefix == null || prefix.length() < MIN_PREFIX_LENGTH || prefix.length() > MAX_PREFIX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (digit(prefix.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Zone with the longest prefix of {@code geohash}, or null when no zone matches.
+     */
+    public HotZoneConfig longestMatch(String geohash) {
+        HotZoneConfig match = null;
+        Node node = root;
+        int depth = Math.min(geohash.length(), MAX_PREFIX_LENGTH);
+        for (int i = 0; i < depth; i++) {
+            int digit = digit(geohash.charAt(i));
+            node = digit < 0 ? null : node.children[digit];
+            if (node == null) {
+                break;
+            }
+            if (node.zone != null) {
+                match = node.zone;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Zones with a prefix strictly longer than {@code prefix} that start with it, i.e. the
+     * zones nested inside the geohash cell {@code prefix}.
+     */
+    public List<HotZoneConfig> nestedIn(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            int digit = digit(prefix.charAt(i));
+            node = digit < 0 ? null : node.children[digit];
+        }
+        List<HotZoneConfig> nested = new ArrayList<>();
+        if (node != null) {
+            for (Node child : node.children) {
+                collect(child, nested);
+            }
+        }
+        return nested;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static void collect(Node node, List<HotZoneConfig> zones) {
+        if (node == null) {
+            return;
+        }
+        if (node.zone != null) {
+            zones.add(node.zone);
+        }
+        for (Node child : node.children) {
+            collect(child, zones);
+        }
+    }
+
+    private static int digit(char c) {
+        return BASE32.indexOf(c);
+    }
+
+    private static final class Node {
+
+        private final Node[] children = new Node[32];
+        private HotZoneConfig zone;
+    }
+}
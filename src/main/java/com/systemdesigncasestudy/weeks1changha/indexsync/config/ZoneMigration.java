@@ -0,0 +1,30 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.config;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A hot zone routing change whose index rows may still sit in the shards of the replaced
+ * routing, as recorded in hot_zone_migration.
+ *
+ * @param id hot_zone_migration row
+ * @param previous the zones before the change (only their shards are kept)
+ * @param prefixes geohash prefixes whose shard changed, none nested in another; {@code ""}
+ *                 covers every row, for a routing that was never recorded
+ * @param cursor how far the rows are already moved, as last saved
+ * @param createdAt when the change was recorded
+ */
+public record ZoneMigration(long id, HotZoneTrie previous, List<String> prefixes, Cursor cursor, Instant createdAt) {
+
+    /**
+     * Scan position: the rows of every prefix before {@code prefixIndex} are moved, and for
+     * that prefix the rows of the shards before {@code shard} and the rows of {@code shard}
+     * up to ({@code afterGeohash}, {@code afterBusinessId}) in key order.
+     *
+     * @param shard geohash_index shard being scanned, {@code ""} for the first one
+     */
+    public record Cursor(int prefixIndex, String shard, String afterGeohash, long afterBusinessId) {
+
+        public static final Cursor START = new Cursor(0, "", "", 0L);
+    }
+}
@@ -0,0 +1,9 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.domain;
+
+public record GeohashIndexEntry(
+    String geohash,
+    long businessId,
+    double latitude,
+    double longitude
+) {
+}
@@ -0,0 +1,11 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+/**
+ * One range partition of change_log; {@code upperBound} is exclusive and null for MAXVALUE.
+ */
+public record ChangeLogPartition(String name, Long upperBound) {
+
+    public boolean isMaxValue() {
+        return upperBound == null;
+    }
+}
@@ -5,17 +5,53 @@ import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 public interface ChangeLogRepository {
 
-    void append(long businessId, ChangeType changeType);
+    /**
+     * Appends a change event and returns it with its assigned id.
+     */
+    BusinessChangeEvent append(long businessId, ChangeType changeType);
 
-    List<BusinessChangeEvent> pollUnprocessed(int limit);
+    /**
+     * Appends one event per business, in order, as a single batch.
+     */
+    List<BusinessChangeEvent> appendAll(List<Long> businessIds, ChangeType changeType);
+
+    /**
+     * Oldest unprocessed events of one partition, where an event belongs to partition
+     * {@code business_id % partitionCount}, so all events of a business stay in order.
+     */
+    List<BusinessChangeEvent> pollUnprocessed(int limit, int partition, int partitionCount);
 
     void markProcessed(Collection<Long> eventIds);
 
-    int countUnprocessed();
+    /**
+     * Up to {@code limit} events with an id above {@code afterId}, processed or not, in id
+     * order. Used to replay changes on top of a rebuilt or restored index.
+     */
+    List<BusinessChangeEvent> findAfter(long afterId, int limit);
+
+    /**
+     * Deletes up to {@code limit} processed events created before {@code cutoff}, oldest
+     * first, and returns how many were deleted.
+     */
+    int deleteProcessedBefore(Instant cutoff, int limit);
+
+    /**
+     * Highest event id appended so far, or 0 for an empty log.
+     */
+    long maxId();
+
+    /**
+     * Lowest event id still retained, or {@code maxId() + 1} when the log is empty. A replay
+     * of the events after id {@code n} misses deleted ones when this is above {@code n + 1}.
+     */
+    long firstRetainedId();
 
-    Optional<Instant> oldestUnprocessedCreatedAt();
+    /**
+     * Highest id up to which every event is processed: one below the oldest unprocessed
+     * event, or {@link #maxId()} when nothing is pending.
+     */
+    long processedUpTo();
 }
@@ -0,0 +1,28 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.Map;
+
+/**
+ * A full rebuild of the geo index. Points added here become visible together on
+ * {@link #commit()} where the backing store supports it, and progress can be checkpointed
+ * so an interrupted load resumes instead of starting over.
+ */
+public interface GeoBulkLoad {
+
+    /**
+     * Progress saved by an interrupted earlier load, or an empty map for a fresh load.
+     */
+    Map<String, String> checkpoint();
+
+    void saveCheckpoint(String field, String value);
+
+    /**
+     * Adds a batch of points in one round trip. Safe to call from several threads.
+     */
+    void addAll(GeoPoints points);
+
+    /**
+     * Replaces the live index with the loaded points and clears the checkpoint.
+     */
+    void commit();
+}
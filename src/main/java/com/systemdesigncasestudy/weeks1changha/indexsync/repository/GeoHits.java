@@ -0,0 +1,127 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distance-sorted geo index result as parallel primitive arrays.
+ */
+public record GeoHits(long[] ids, double[] distancesMeters) {
+
+    public static final GeoHits EMPTY = new GeoHits(new long[0], new double[0]);
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long id(int index) {
+        return ids[index];
+    }
+
+    public double distance(int index) {
+        return distancesMeters[index];
+    }
+
+    public List<Long> idsBetween(int fromIndex, int toIndex) {
+        List<Long> result = new ArrayList<>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Total order of hits: distance, then business id. Keyset cursors compare against it.
+     */
+    public static int compare(double distance, long id, double otherDistance, long otherId) {
+        int byDistance = Double.compare(distance, otherDistance);
+        return byDistance != 0 ? byDistance : Long.compare(id, otherId);
+    }
+
+    /**
+     * Index of the first hit ordered after ({@code distance}, {@code id}).
+     */
+    public int firstAfter(double distance, long id) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(distancesMeters[mid], ids[mid], distance, id) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Growable (id, distance) buffer, sorted by {@link #compare} without boxing: a bottom-up
+     * merge sort over an int[] of slot indexes.
+     */
+    public static final class Builder {
+
+        private long[] ids = new long[64];
+        private double[] distances = new double[64];
+        private int size;
+
+        public void add(long id, double distance) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            ids[size] = id;
+            distances[size] = distance;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public GeoHits build(int limit) {
+            int[] order = sortedSlots();
+            int count = Math.min(size, limit);
+            long[] sortedIds = new long[count];
+            double[] sortedDistances = new double[count];
+            for (int i = 0; i < count; i++) {
+                int slot = order[i];
+                sortedIds[i] = ids[slot];
+                sortedDistances[i] = distances[slot];
+            }
+            return new GeoHits(sortedIds, sortedDistances);
+        }
+
+        private int[] sortedSlots() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            int[] buffer = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int from = 0; from < size; from += 2 * width) {
+                    int middle = Math.min(from + width, size);
+                    int to = Math.min(from + 2 * width, size);
+                    int left = from;
+                    int right = middle;
+                    for (int k = from; k < to; k++) {
+                        if (right >= to || (left < middle && !before(order[right], order[left]))) {
+                            buffer[k] = order[left++];
+                        } else {
+                            buffer[k] = order[right++];
+                        }
+                    }
+                }
+                int[] merged = buffer;
+                buffer = order;
+                order = merged;
+            }
+            return order;
+        }
+
+        private boolean before(int slot, int otherSlot) {
+            return compare(distances[slot], ids[slot], distances[otherSlot], ids[otherSlot]) < 0;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.Collection;
+
+/**
+ * Point index used by the nearby-search read path.
+ * Backed by Redis GeoSet by default, or by an in-process index under the "geo-inmemory" profile.
+ */
+public interface GeoIndex {
+
+    void add(long businessId, double latitude, double longitude);
+
+    void remove(long businessId);
+
+    /**
+     * Adds or moves every point in {@code upserts} and removes {@code removedBusinessIds}
+     * in one round trip.
+     */
+    void update(GeoPoints upserts, Collection<Long> removedBusinessIds);
+
+    /**
+     * Returns up to {@code limit} nearest business IDs within the given radius with their distances,
+     * sorted by distance ascending.
+     */
+    GeoHits findByRadius(double latitude, double longitude, double radiusMeters, int limit);
+
+    /**
+     * Number of businesses within the given radius. Implementations may return an estimate
+     * when an exact count would cost as much as fetching every candidate.
+     */
+    int countByRadius(double latitude, double longitude, double radiusMeters);
+
+    /**
+     * Returns up to {@code limit} businesses inside the latitude/longitude box, in no particular order.
+     */
+    GeoPoints findInBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, int limit);
+
+    /**
+     * Current indexed positions of the given businesses; businesses not in the index are left out.
+     */
+    GeoPoints findPositions(Collection<Long> businessIds);
+
+    /**
+     * Starts (or resumes) a full rebuild of the index.
+     */
+    GeoBulkLoad startBulkLoad();
+
+    /**
+     * Check if the index has any data (for bulk-load decision).
+     */
+    boolean hasData();
+}
@@ -0,0 +1,143 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary file holding one packed {@link InMemoryGeoIndexRepository} snapshot.
+ *
+ * Layout (little-endian): a 32-byte header {@code magic, version, changeLogId, count, 0,
+ * checksum} followed by four sections of {@code count} 8-byte values each: interleaved
+ * geohash keys (ascending), business ids, latitudes and longitudes. Every section is read and
+ * written as its own memory-mapped region with one bulk copy, so loading costs about as much
+ * as reading the file. The checksum is a CRC32C over the first 24 header bytes and the
+ * sections, so a torn or corrupted file is rejected instead of restored.
+ */
+final class GeoIndexSnapshotFile {
+
+    private static final int MAGIC = 0x47454F53; // "GEOS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    /** Header bytes covered by the checksum: everything before the checksum itself. */
+    private static final int CHECKSUMMED_HEADER_BYTES = 24;
+
+    private GeoIndexSnapshotFile() {
+    }
+
+    record Contents(long changeLogId, long[] keys, long[] ids, double[] latitudes, double[] longitudes) {
+    }
+
+    /**
+     * Writes to a temporary file next to {@code file} and moves it into place, so a crash
+     * mid-write leaves the previous snapshot intact. The mapped sections are forced one by one
+     * ({@link FileChannel#force} does not cover changes made through a mapping) before the
+     * header and the move.
+     */
+    static void write(Path file, Contents contents) throws IOException {
+        int count = contents.keys().length;
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putLong(contents.changeLogId()).putInt(count).putInt(0);
+                CRC32C checksum = new CRC32C();
+                checksum.update(header.array(), 0, CHECKSUMMED_HEADER_BYTES);
+
+                long sectionBytes = (long) count * Long.BYTES;
+                long offset = HEADER_BYTES;
+                MappedByteBuffer section = map(channel, FileChannel.MapMode.READ_WRITE, offset, sectionBytes);
+                section.asLongBuffer().put(contents.keys());
+                checksum.update(section.force());
+                offset += sectionBytes;
+                section = map(channel, FileChannel.MapMode.READ_WRITE, offset, sectionBytes);
+                section.asLongBuffer().put(contents.ids());
+                checksum.update(section.force());
+                offset += sectionBytes;
+                section = map(channel, FileChannel.MapMode.READ_WRITE, offset, sectionBytes);
+                section.asDoubleBuffer().put(contents.latitudes());
+                checksum.update(section.force());
+                offset += sectionBytes;
+                section = map(channel, FileChannel.MapMode.READ_WRITE, offset, sectionBytes);
+                section.asDoubleBuffer().put(contents.longitudes());
+                checksum.update(section.force());
+
+                header.putLong(checksum.getValue());
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, HEADER_BYTES - header.remaining());
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Truncated geo index snapshot: " + file);
+            }
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            int magic = header.getInt();
+            int version = header.getInt();
+            long changeLogId = header.getLong();
+            int count = header.getInt();
+            header.getInt();
+            long expectedChecksum = header.getLong();
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException("Not a version " + VERSION + " geo index snapshot: " + file);
+            }
+            long sectionBytes = (long) count * Long.BYTES;
+            if (count < 0 || channel.size() != HEADER_BYTES + 4 * sectionBytes) {
+                throw new IOException("Geo index snapshot size does not match its header: " + file);
+            }
+
+            long[] keys = new long[count];
+            long[] ids = new long[count];
+            double[] latitudes = new double[count];
+            double[] longitudes = new double[count];
+            CRC32C checksum = new CRC32C();
+            checksum.update(header.position(0).limit(CHECKSUMMED_HEADER_BYTES));
+            long offset = HEADER_BYTES;
+            MappedByteBuffer section = map(channel, FileChannel.MapMode.READ_ONLY, offset, sectionBytes);
+            section.asLongBuffer().get(keys);
+            checksum.update(section);
+            offset += sectionBytes;
+            section = map(channel, FileChannel.MapMode.READ_ONLY, offset, sectionBytes);
+            section.asLongBuffer().get(ids);
+            checksum.update(section);
+            offset += sectionBytes;
+            section = map(channel, FileChannel.MapMode.READ_ONLY, offset, sectionBytes);
+            section.asDoubleBuffer().get(latitudes);
+            checksum.update(section);
+            offset += sectionBytes;
+            section = map(channel, FileChannel.MapMode.READ_ONLY, offset, sectionBytes);
+            section.asDoubleBuffer().get(longitudes);
+            checksum.update(section);
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("Geo index snapshot checksum mismatch: " + file);
+            }
+            return new Contents(changeLogId, keys, ids, latitudes, longitudes);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long size)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
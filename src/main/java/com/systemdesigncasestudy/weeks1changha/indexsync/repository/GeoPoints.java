@@ -0,0 +1,53 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.Arrays;
+
+/**
+ * Unordered (id, latitude, longitude) tuples as parallel primitive arrays.
+ */
+public record GeoPoints(long[] ids, double[] latitudes, double[] longitudes) {
+
+    public static final GeoPoints EMPTY = new GeoPoints(new long[0], new double[0], new double[0]);
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Growable point buffer that silently drops points beyond {@code limit}.
+     */
+    public static final class Builder {
+
+        private final int limit;
+        private long[] ids = new long[16];
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private int size;
+
+        public Builder(int limit) {
+            this.limit = limit;
+        }
+
+        public void add(long id, double latitude, double longitude) {
+            if (size >= limit) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            ids[size] = id;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+
+        public GeoPoints build() {
+            return new GeoPoints(
+                    Arrays.copyOf(ids, size),
+                    Arrays.copyOf(latitudes, size),
+                    Arrays.copyOf(longitudes, size));
+        }
+    }
+}
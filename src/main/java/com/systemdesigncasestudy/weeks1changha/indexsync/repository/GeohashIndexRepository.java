@@ -1,5 +1,8 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
 
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.GeohashIndexEntry;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 public interface GeohashIndexRepository {
@@ -13,5 +16,21 @@ public interface GeohashIndexRepository {
 
     void deleteByBusinessId(long businessId);
 
+    /**
+     * Applies a whole sync batch: upserts (with coordinates) and deletes in as few
+     * round trips as possible. A business must not appear in both collections.
+     */
+    void applyBatch(List<GeohashIndexEntry> upserts, Collection<Long> deletedBusinessIds);
+
     Set<Long> findBusinessIdsByPrefix(String geohashPrefix);
+
+    /**
+     * Name of the shard that indexes {@code geohash}.
+     */
+    String shardFor(String geohash);
+
+    /**
+     * Index rows of businesses with an id in ({@code afterId}, {@code toId}], from every shard.
+     */
+    GeohashIndexRows findByBusinessIdRange(long afterId, long toId);
 }
@@ -0,0 +1,9 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.Map;
+
+/**
+ * Indexed geohash per business id, per geohash_index shard name.
+ */
+public record GeohashIndexRows(Map<String, Map<Long, String>> shards) {
+}
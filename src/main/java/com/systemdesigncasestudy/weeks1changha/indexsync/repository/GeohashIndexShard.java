@@ -0,0 +1,9 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * One geohash_index shard: a table and the DB it lives in.
+ */
+public record GeohashIndexShard(String name, String tableName, JdbcTemplate template) {
+}
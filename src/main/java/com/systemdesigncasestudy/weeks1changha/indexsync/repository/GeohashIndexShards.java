@@ -0,0 +1,124 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The configured geohash_index shards, plus the threads that query several of them at once.
+ * Closing it closes the connection pools that were created for the shards.
+ *
+ * A scatter queries its first shard on the calling thread and only the others on the shared
+ * scatter pool, so {@code scatterThreads} is what all concurrent requests need for their
+ * second and later shards; a request waiting for a pool thread still makes progress on its
+ * first shard.
+ */
+public class GeohashIndexShards implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GeohashIndexShards.class);
+
+    private final Map<String, GeohashIndexShard> byName = new LinkedHashMap<>();
+    private final GeohashIndexShard defaultShard;
+    private final List<? extends AutoCloseable> ownedResources;
+    private final ExecutorService executor;
+    private final Set<String> warnedUnknown = ConcurrentHashMap.newKeySet();
+
+    public GeohashIndexShards(
+            List<GeohashIndexShard> shards,
+            String defaultShard,
+            int scatterThreads,
+            List<? extends AutoCloseable> ownedResources) {
+        for (GeohashIndexShard shard : shards) {
+            byName.put(shard.name(), shard);
+        }
+        this.defaultShard = byName.get(defaultShard);
+        if (this.defaultShard == null) {
+            throw new IllegalStateException("Default geohash index shard '" + defaultShard + "' is not configured");
+        }
+        this.ownedResources = ownedResources;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, scatterThreads), runnable -> {
+            Thread thread = new Thread(runnable, "geohash-index-scatter-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Collection<GeohashIndexShard> all() {
+        return byName.values();
+    }
+
+    public GeohashIndexShard defaultShard() {
+        return defaultShard;
+    }
+
+    /**
+     * Shard by name. An unknown name (a hot zone pointing at a shard that is not configured)
+     * resolves to the default shard, for writes and reads alike.
+     */
+    public GeohashIndexShard named(String name) {
+        GeohashIndexShard shard = name != null ? byName.get(name) : null;
+        if (shard != null) {
+            return shard;
+        }
+        if (name != null && warnedUnknown.add(name)) {
+            log.warn("Geohash index shard '{}' is not configured, using '{}'", name, defaultShard.name());
+        }
+        return defaultShard;
+    }
+
+    /**
+     * Runs {@code query} against every given shard, concurrently when there is more than one
+     * (the first on the calling thread), and returns the results in shard order.
+     */
+    public <T> List<T> scatter(Collection<GeohashIndexShard> shards, Function<GeohashIndexShard, T> query) {
+        List<GeohashIndexShard> targets = List.copyOf(shards);
+        if (targets.isEmpty()) {
+            return List.of();
+        }
+        if (targets.size() == 1) {
+            return List.of(query.apply(targets.get(0)));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size() - 1);
+        for (GeohashIndexShard shard : targets.subList(1, targets.size())) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), executor));
+        }
+        List<T> results = new ArrayList<>(targets.size());
+        try {
+            results.add(query.apply(targets.get(0)));
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (AutoCloseable resource : ownedResources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Failed to close geohash index shard resource", e);
+            }
+        }
+    }
+}
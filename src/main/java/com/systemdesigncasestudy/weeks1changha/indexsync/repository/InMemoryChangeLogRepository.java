@@ -5,70 +5,173 @@ import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
+/**
+ * Change log kept as a list of fixed-size segments in id order. Ids are dense, so an id maps
+ * straight to its segment and slot. A segment is dropped once it is full and every event in
+ * it is processed, so memory follows the backlog rather than the total number of events.
+ *
+ * Each (partition, partitionCount) pair keeps a consumed offset: the id below which it has
+ * no unprocessed events. Polls start there instead of rescanning processed history.
+ */
 @Profile("!mysql")
 @Repository
 public class InMemoryChangeLogRepository implements ChangeLogRepository {
 
-    private final AtomicLong sequence = new AtomicLong(1L);
-    private final List<BusinessChangeEvent> events = new ArrayList<>();
-    private final Set<Long> processedIds = new HashSet<>();
+    static final int SEGMENT_SIZE = 1024;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Long, Long> consumedOffsets = new HashMap<>();
+    private long nextId = 1L;
+
+    @Override
+    public synchronized BusinessChangeEvent append(long businessId, ChangeType changeType) {
+        Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (tail == null || tail.isFull()) {
+            tail = new Segment(nextId);
+            segments.add(tail);
+        }
+        BusinessChangeEvent event = new BusinessChangeEvent(nextId++, businessId, changeType, Instant.now());
+        tail.add(event);
+        return event;
+    }
 
     @Override
-    public synchronized void append(long businessId, ChangeType changeType) {
-        long eventId = sequence.getAndIncrement();
-        events.add(new BusinessChangeEvent(eventId, businessId, changeType, Instant.now()));
+    public synchronized List<BusinessChangeEvent> appendAll(List<Long> businessIds, ChangeType changeType) {
+        List<BusinessChangeEvent> appended = new ArrayList<>(businessIds.size());
+        for (long businessId : businessIds) {
+            appended.add(append(businessId, changeType));
+        }
+        return appended;
     }
 
     @Override
-    public synchronized List<BusinessChangeEvent> pollUnprocessed(int limit) {
+    public synchronized List<BusinessChangeEvent> pollUnprocessed(int limit, int partition, int partitionCount) {
         List<BusinessChangeEvent> result = new ArrayList<>();
-        for (BusinessChangeEvent event : events) {
-            if (processedIds.contains(event.id())) {
-                continue;
-            }
-            result.add(event);
-            if (result.size() >= limit) {
-                break;
+        long offsetKey = ((long) partitionCount << 32) | partition;
+        long id = Math.max(consumedOffsets.getOrDefault(offsetKey, 1L), firstRetainedId());
+        long consumed = id;
+        boolean consuming = true;
+        for (; id < nextId && result.size() < limit; id++) {
+            Segment segment = segmentOf(id);
+            int slot = (int) (id - segment.firstId);
+            BusinessChangeEvent event = segment.events[slot];
+            boolean pending = !segment.processed[slot] && inPartition(event, partition, partitionCount);
+            if (pending) {
+                result.add(event);
+                consuming = false;
+            } else if (consuming) {
+                consumed = id + 1;
             }
         }
+        consumedOffsets.put(offsetKey, consumed);
         return result;
     }
 
     @Override
     public synchronized void markProcessed(Collection<Long> eventIds) {
-        processedIds.addAll(eventIds);
+        long firstId = firstRetainedId();
+        for (long id : eventIds) {
+            if (id >= firstId && id < nextId) {
+                Segment segment = segmentOf(id);
+                segment.markProcessed((int) (id - segment.firstId));
+            }
+        }
+        int drop = 0;
+        while (drop < segments.size() && segments.get(drop).isFull() && segments.get(drop).unprocessed == 0) {
+            drop++;
+        }
+        if (drop > 0) {
+            segments.subList(0, drop).clear();
+        }
     }
 
+    /**
+     * Only events of segments that are still retained can be returned.
+     */
     @Override
-    public synchronized int countUnprocessed() {
-        int count = 0;
-        for (BusinessChangeEvent event : events) {
-            if (!processedIds.contains(event.id())) {
-                count++;
-            }
+    public synchronized List<BusinessChangeEvent> findAfter(long afterId, int limit) {
+        List<BusinessChangeEvent> result = new ArrayList<>();
+        for (long id = Math.max(afterId + 1, firstRetainedId()); id < nextId && result.size() < limit; id++) {
+            Segment segment = segmentOf(id);
+            result.add(segment.events[(int) (id - segment.firstId)]);
         }
-        return count;
+        return result;
+    }
+
+    @Override
+    public int deleteProcessedBefore(Instant cutoff, int limit) {
+        // Processed segments are already dropped by markProcessed
+        return 0;
+    }
+
+    @Override
+    public synchronized long maxId() {
+        return nextId - 1;
     }
 
     @Override
-    public synchronized Optional<Instant> oldestUnprocessedCreatedAt() {
-        Instant oldest = null;
-        for (BusinessChangeEvent event : events) {
-            if (processedIds.contains(event.id())) {
-                continue;
+    public synchronized long firstRetainedId() {
+        return segments.isEmpty() ? nextId : segments.get(0).firstId;
+    }
+
+    @Override
+    public synchronized long processedUpTo() {
+        for (Segment segment : segments) {
+            if (segment.unprocessed > 0) {
+                for (int slot = 0; slot < segment.size; slot++) {
+                    if (!segment.processed[slot]) {
+                        return segment.firstId + slot - 1;
+                    }
+                }
             }
-            if (oldest == null || event.createdAt().isBefore(oldest)) {
-                oldest = event.createdAt();
+        }
+        return nextId - 1;
+    }
+
+    synchronized int retainedSegments() {
+        return segments.size();
+    }
+
+    private Segment segmentOf(long id) {
+        return segments.get((int) ((id - segments.get(0).firstId) / SEGMENT_SIZE));
+    }
+
+    private static boolean inPartition(BusinessChangeEvent event, int partition, int partitionCount) {
+        return Math.floorMod(event.businessId(), partitionCount) == partition;
+    }
+
+    private static final class Segment {
+
+        private final long firstId;
+        private final BusinessChangeEvent[] events = new BusinessChangeEvent[SEGMENT_SIZE];
+        private final boolean[] processed = new boolean[SEGMENT_SIZE];
+        private int size;
+        private int unprocessed;
+
+        private Segment(long firstId) {
+            this.firstId = firstId;
+        }
+
+        private boolean isFull() {
+            return size == SEGMENT_SIZE;
+        }
+
+        private void add(BusinessChangeEvent event) {
+            events[size++] = event;
+            unprocessed++;
+        }
+
+        private void markProcessed(int slot) {
+            if (!processed[slot]) {
+                processed[slot] = true;
+                unprocessed--;
             }
         }
-        return Optional.ofNullable(oldest);
     }
 }
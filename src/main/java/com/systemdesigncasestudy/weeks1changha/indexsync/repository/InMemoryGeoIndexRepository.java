@@ -0,0 +1,359 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import com.systemdesigncasestudy.weeks1changha.geo.GeoDistance;
+import com.systemdesigncasestudy.weeks1changha.geo.InterleavedGeohash;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * In-process replacement for the Redis GeoSet.
+ *
+ * Points live in a packed snapshot of parallel primitive arrays sorted by a 52-bit
+ * interleaved geohash (the same layout Redis uses for GeoSet scores), so one radius
+ * query is at most nine binary searches over contiguous ranges. Writes go to a small
+ * overlay map that is merged into a fresh snapshot once it reaches the merge threshold;
+ * readers always see an immutable snapshot plus the overlay that belongs to it.
+ */
+@Profile("geo-inmemory")
+@Repository
+public class InMemoryGeoIndexRepository implements GeoIndex {
+
+    private final int mergeThreshold;
+    private volatile State state = new State(Snapshot.EMPTY, new ConcurrentHashMap<>());
+
+    public InMemoryGeoIndexRepository(@Value("${app.geo-index.merge-threshold:4096}") int mergeThreshold) {
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    @Override
+    public synchronized void add(long businessId, double latitude, double longitude) {
+        state.overlay().put(businessId, Entry.of(latitude, longitude));
+        mergeIfNeeded();
+    }
+
+    @Override
+    public synchronized void remove(long businessId) {
+        state.overlay().put(businessId, Entry.TOMBSTONE);
+        mergeIfNeeded();
+    }
+
+    @Override
+    public synchronized void update(GeoPoints upserts, Collection<Long> removedBusinessIds) {
+        Map<Long, Entry> overlay = state.overlay();
+        for (int i = 0; i < upserts.size(); i++) {
+            overlay.put(upserts.ids()[i], Entry.of(upserts.latitudes()[i], upserts.longitudes()[i]));
+        }
+        for (Long id : removedBusinessIds) {
+            overlay.put(id, Entry.TOMBSTONE);
+        }
+        mergeIfNeeded();
+    }
+
+    @Override
+    public GeoHits findByRadius(double latitude, double longitude, double radiusMeters, int limit) {
+        GeoHits.Builder matches = new GeoHits.Builder();
+        visit(latitude, longitude, radiusMeters, (id, pointLatitude, pointLongitude) -> {
+            double distance = GeoDistance.haversineMeters(latitude, longitude, pointLatitude, pointLongitude);
+            if (distance <= radiusMeters) {
+                matches.add(id, distance);
+            }
+        });
+        return matches.build(limit);
+    }
+
+    @Override
+    public int countByRadius(double latitude, double longitude, double radiusMeters) {
+        int[] count = {0};
+        visit(latitude, longitude, radiusMeters, (id, pointLatitude, pointLongitude) -> {
+            if (GeoDistance.haversineMeters(latitude, longitude, pointLatitude, pointLongitude) <= radiusMeters) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    @Override
+    public GeoPoints findInBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, int limit) {
+        double centerLatitude = (minLatitude + maxLatitude) / 2;
+        double centerLongitude = (minLongitude + maxLongitude) / 2;
+        double halfDiagonal = GeoDistance.haversineMeters(centerLatitude, centerLongitude, maxLatitude, maxLongitude);
+
+        GeoPoints.Builder points = new GeoPoints.Builder(limit);
+        visit(centerLatitude, centerLongitude, halfDiagonal, (id, pointLatitude, pointLongitude) -> {
+            if (pointLatitude >= minLatitude && pointLatitude < maxLatitude
+                    && pointLongitude >= minLongitude && pointLongitude < maxLongitude) {
+                points.add(id, pointLatitude, pointLongitude);
+            }
+        });
+        return points.build();
+    }
+
+    @Override
+    public GeoPoints findPositions(Collection<Long> businessIds) {
+        State current = state;
+        GeoPoints.Builder points = new GeoPoints.Builder(businessIds.size());
+        for (Long id : businessIds) {
+            Entry entry = current.overlay().get(id);
+            if (entry != null) {
+                if (entry.live()) {
+                    points.add(id, entry.latitude(), entry.longitude());
+                }
+                continue;
+            }
+            int slot = current.snapshot().slotOf(id);
+            if (slot >= 0) {
+                points.add(id, current.snapshot().latitudes()[slot], current.snapshot().longitudes()[slot]);
+            }
+        }
+        return points.build();
+    }
+
+    /**
+     * Loads straight into the live index; there is nothing to resume after a restart.
+     */
+    @Override
+    public GeoBulkLoad startBulkLoad() {
+        return new GeoBulkLoad() {
+            @Override
+            public Map<String, String> checkpoint() {
+                return Map.of();
+            }
+
+            @Override
+            public void saveCheckpoint(String field, String value) {
+            }
+
+            @Override
+            public void addAll(GeoPoints points) {
+                update(points, List.of());
+            }
+
+            @Override
+            public void commit() {
+            }
+        };
+    }
+
+    @Override
+    public boolean hasData() {
+        State current = state;
+        if (current.snapshot().size() > 0) {
+            return true;
+        }
+        return current.overlay().values().stream().anyMatch(Entry::live);
+    }
+
+    /**
+     * Merges pending writes and saves the resulting snapshot to {@code file} together with
+     * {@code changeLogId}, the change-log id up to which every event is reflected in it.
+     * Writes are only blocked while the overlay is merged, not while the file is written.
+     */
+    public void writeSnapshot(Path file, long changeLogId) throws IOException {
+        Snapshot snapshot;
+        synchronized (this) {
+            State current = state;
+            if (!current.overlay().isEmpty()) {
+                state = new State(current.snapshot().merge(current.overlay()), new ConcurrentHashMap<>());
+            }
+            snapshot = state.snapshot();
+        }
+        GeoIndexSnapshotFile.write(file, new GeoIndexSnapshotFile.Contents(
+                changeLogId, snapshot.keys(), snapshot.ids(), snapshot.latitudes(), snapshot.longitudes()));
+    }
+
+    /**
+     * Replaces the whole index with the snapshot saved in {@code file} and returns the
+     * change-log id it was saved with. Events after that id still have to be replayed.
+     */
+    public long restoreSnapshot(Path file) throws IOException {
+        GeoIndexSnapshotFile.Contents contents = GeoIndexSnapshotFile.read(file);
+        Snapshot snapshot = Snapshot.of(contents.keys(), contents.ids(), contents.latitudes(), contents.longitudes());
+        synchronized (this) {
+            state = new State(snapshot, new ConcurrentHashMap<>());
+        }
+        return contents.changeLogId();
+    }
+
+    /**
+     * Drops every point, e.g. when a restored snapshot turns out to be unusable.
+     */
+    public synchronized void clear() {
+        state = new State(Snapshot.EMPTY, new ConcurrentHashMap<>());
+    }
+
+    private void mergeIfNeeded() {
+        State current = state;
+        if (current.overlay().size() < mergeThreshold) {
+            return;
+        }
+        state = new State(current.snapshot().merge(current.overlay()), new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Visits every live point in the geohash cells covering the circle (and every overlay point);
+     * the visitor does the exact filtering.
+     */
+    private void visit(double latitude, double longitude, double radiusMeters, PointVisitor visitor) {
+        State current = state;
+        Map<Long, Entry> overlay = current.overlay();
+
+        // Visit the overlay before the snapshot: a concurrent write can then only hide a point
+        // for this one query, never report it twice.
+        overlay.forEach((id, entry) -> {
+            if (entry.live()) {
+                visitor.visit(id, entry.latitude(), entry.longitude());
+            }
+        });
+
+        InterleavedGeohash.Covering covering = InterleavedGeohash.WGS84.cover(latitude, longitude, radiusMeters);
+        for (int cell = 0; cell < covering.cellCount(); cell++) {
+            current.snapshot().visit(covering.from(cell), covering.to(cell), overlay, visitor);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PointVisitor {
+        void visit(long id, double latitude, double longitude);
+    }
+
+    private record State(Snapshot snapshot, ConcurrentHashMap<Long, Entry> overlay) {
+    }
+
+    private record Entry(boolean live, long key, double latitude, double longitude) {
+
+        private static final Entry TOMBSTONE = new Entry(false, 0L, 0d, 0d);
+
+        private static Entry of(double latitude, double longitude) {
+            return new Entry(true, InterleavedGeohash.WGS84.encode(latitude, longitude), latitude, longitude);
+        }
+    }
+
+    /**
+     * Points sorted by interleaved geohash, plus an open-addressing id -> slot table
+     * for position lookups.
+     */
+    private record Snapshot(long[] keys, long[] ids, double[] latitudes, double[] longitudes, int[] idSlots) {
+
+        private static final Snapshot EMPTY = of(new long[0], new long[0], new double[0], new double[0]);
+
+        private static Snapshot of(long[] keys, long[] ids, double[] latitudes, double[] longitudes) {
+            int capacity = Integer.highestOneBit(Math.max(2, ids.length * 2 - 1)) << 1;
+            int[] idSlots = new int[capacity];
+            for (int slot = 0; slot < ids.length; slot++) {
+                int bucket = bucket(ids[slot], capacity);
+                while (idSlots[bucket] != 0) {
+                    bucket = (bucket + 1) & (capacity - 1);
+                }
+                idSlots[bucket] = slot + 1;
+            }
+            return new Snapshot(keys, ids, latitudes, longitudes, idSlots);
+        }
+
+        private int size() {
+            return keys.length;
+        }
+
+        private int slotOf(long id) {
+            int bucket = bucket(id, idSlots.length);
+            while (idSlots[bucket] != 0) {
+                int slot = idSlots[bucket] - 1;
+                if (ids[slot] == id) {
+                    return slot;
+                }
+                bucket = (bucket + 1) & (idSlots.length - 1);
+            }
+            return -1;
+        }
+
+        private static int bucket(long id, int capacity) {
+            long z = (id ^ (id >>> 33)) * 0xff51afd7ed558ccdL;
+            return (int) (z ^ (z >>> 33)) & (capacity - 1);
+        }
+
+        private void visit(long fromKey, long toKey, Map<Long, Entry> overlay, PointVisitor visitor) {
+            for (int i = lowerBound(fromKey); i < keys.length && keys[i] < toKey; i++) {
+                long id = ids[i];
+                if (!overlay.isEmpty() && overlay.containsKey(id)) {
+                    continue; // Overlay holds the newer state for this business
+                }
+                visitor.visit(id, latitudes[i], longitudes[i]);
+            }
+        }
+
+        private int lowerBound(long key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Linear merge of this (already sorted) snapshot with the overlay entries sorted by key.
+         */
+        private Snapshot merge(Map<Long, Entry> overlay) {
+            List<Map.Entry<Long, Entry>> upserts = new ArrayList<>();
+            for (Map.Entry<Long, Entry> e : overlay.entrySet()) {
+                if (e.getValue().live()) {
+                    upserts.add(e);
+                }
+            }
+            upserts.sort(Comparator.comparingLong(e -> e.getValue().key()));
+
+            int capacity = keys.length + upserts.size();
+            long[] newKeys = new long[capacity];
+            long[] newIds = new long[capacity];
+            double[] newLatitudes = new double[capacity];
+            double[] newLongitudes = new double[capacity];
+
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < keys.length || j < upserts.size()) {
+                if (i < keys.length && overlay.containsKey(ids[i])) {
+                    i++;
+                    continue;
+                }
+                boolean takeSnapshot = j >= upserts.size()
+                        || (i < keys.length && keys[i] <= upserts.get(j).getValue().key());
+                if (takeSnapshot) {
+                    newKeys[size] = keys[i];
+                    newIds[size] = ids[i];
+                    newLatitudes[size] = latitudes[i];
+                    newLongitudes[size] = longitudes[i];
+                    i++;
+                } else {
+                    Map.Entry<Long, Entry> upsert = upserts.get(j);
+                    newKeys[size] = upsert.getValue().key();
+                    newIds[size] = upsert.getKey();
+                    newLatitudes[size] = upsert.getValue().latitude();
+                    newLongitudes[size] = upsert.getValue().longitude();
+                    j++;
+                }
+                size++;
+            }
+
+            return Snapshot.of(
+                    Arrays.copyOf(newKeys, size),
+                    Arrays.copyOf(newIds, size),
+                    Arrays.copyOf(newLatitudes, size),
+                    Arrays.copyOf(newLongitudes, size));
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
 
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.GeohashIndexEntry;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.context.annotation.Profile;
@@ -10,6 +15,8 @@ import org.springframework.stereotype.Repository;
 @Repository
 public class InMemoryGeohashIndexRepository implements GeohashIndexRepository {
 
+    private static final String SHARD = "memory";
+
     private final ConcurrentHashMap<String, Set<Long>> geohashToBusinessIds = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<Long, String> businessIdToGeohash = new ConcurrentHashMap<>();
 
@@ -53,6 +60,16 @@ public class InMemoryGeohashIndexRepository implements GeohashIndexRepository {
         }
     }
 
+    @Override
+    public synchronized void applyBatch(List<GeohashIndexEntry> upserts, Collection<Long> deletedBusinessIds) {
+        for (GeohashIndexEntry entry : upserts) {
+            upsert(entry.geohash(), entry.businessId());
+        }
+        for (Long businessId : deletedBusinessIds) {
+            deleteByBusinessId(businessId);
+        }
+    }
+
     @Override
     public Set<Long> findBusinessIdsByPrefix(String geohashPrefix) {
         Set<Long> result = new HashSet<>();
@@ -63,4 +80,20 @@ public class InMemoryGeohashIndexRepository implements GeohashIndexRepository {
         });
         return result;
     }
+
+    @Override
+    public String shardFor(String geohash) {
+        return SHARD;
+    }
+
+    @Override
+    public GeohashIndexRows findByBusinessIdRange(long afterId, long toId) {
+        Map<Long, String> rows = new HashMap<>();
+        businessIdToGeohash.forEach((businessId, geohash) -> {
+            if (businessId > afterId && businessId <= toId) {
+                rows.put(businessId, geohash);
+            }
+        });
+        return new GeohashIndexRows(Map.of(SHARD, rows));
+    }
 }
@@ -0,0 +1,14 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.List;
+
+/**
+ * One chunk of a shard scan for rows the current hot zones route elsewhere.
+ *
+ * @param scanned rows read; fewer than the limit means the scan reached the end
+ * @param lastGeohash key of the last row read, to continue after
+ * @param lastBusinessId key of the last row read, to continue after
+ * @param businessIds businesses whose row is in the wrong shard
+ */
+public record MisplacedIndexRows(int scanned, String lastGeohash, long lastBusinessId, List<Long> businessIds) {
+}
@@ -0,0 +1,118 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Partition maintenance for a change_log that is range-partitioned by id
+ * (db/mysql/change_log_partitioned.sql). Partitions are named {@code p<upperBound>}.
+ *
+ * DDL runs with a short {@code lock_wait_timeout}: while ALTER TABLE waits for the metadata
+ * lock, appends queue behind it, so it gives up quickly and retries on the next run instead.
+ */
+@Profile("mysql")
+@Repository
+public class MysqlChangeLogPartitionRepository {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MysqlChangeLogPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Partitions in ascending range order, or an empty list when change_log is not partitioned.
+     */
+    public List<ChangeLogPartition> findPartitions() {
+        return jdbcTemplate.query(
+            """
+                SELECT PARTITION_NAME, PARTITION_DESCRIPTION
+                FROM information_schema.PARTITIONS
+                WHERE TABLE_SCHEMA = DATABASE()
+                  AND TABLE_NAME = 'change_log'
+                  AND PARTITION_NAME IS NOT NULL
+                ORDER BY PARTITION_ORDINAL_POSITION
+            """,
+            (rs, rowNum) -> {
+                String description = rs.getString("PARTITION_DESCRIPTION");
+                Long upperBound = "MAXVALUE".equalsIgnoreCase(description) ? null : Long.valueOf(description);
+                return new ChangeLogPartition(rs.getString("PARTITION_NAME"), upperBound);
+            }
+        );
+    }
+
+    /**
+     * Whether every event of the partition is processed and created before {@code cutoff}.
+     */
+    public boolean isExpired(ChangeLogPartition partition, Instant cutoff) {
+        String name = checkedName(partition);
+        List<Long> unprocessed = jdbcTemplate.queryForList(
+            "SELECT id FROM change_log PARTITION (%s) WHERE processed = 0 LIMIT 1".formatted(name),
+            Long.class
+        );
+        if (!unprocessed.isEmpty()) {
+            return false;
+        }
+        // Ids grow with created_at, so the newest row sits at the end of the primary key
+        List<Timestamp> newest = jdbcTemplate.queryForList(
+            "SELECT created_at FROM change_log PARTITION (%s) ORDER BY id DESC LIMIT 1".formatted(name),
+            Timestamp.class
+        );
+        return newest.isEmpty() || newest.get(0).toInstant().isBefore(cutoff);
+    }
+
+    public void dropPartition(ChangeLogPartition partition, int lockWaitTimeoutSeconds) {
+        executeDdl(
+            "ALTER TABLE change_log DROP PARTITION %s".formatted(checkedName(partition)),
+            lockWaitTimeoutSeconds
+        );
+    }
+
+    /**
+     * Splits a new {@code p<upperBound>} partition off the MAXVALUE partition. This only
+     * moves rows when the MAXVALUE partition already has some, so call it ahead of time.
+     */
+    public void addPartition(ChangeLogPartition maxValuePartition, long upperBound, int lockWaitTimeoutSeconds) {
+        String maxValueName = checkedName(maxValuePartition);
+        executeDdl(
+            """
+                ALTER TABLE change_log REORGANIZE PARTITION %s INTO (
+                  PARTITION p%d VALUES LESS THAN (%d),
+                  PARTITION %s VALUES LESS THAN MAXVALUE
+                )
+            """.formatted(maxValueName, upperBound, upperBound, maxValueName),
+            lockWaitTimeoutSeconds
+        );
+    }
+
+    private void executeDdl(String ddl, int lockWaitTimeoutSeconds) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET SESSION lock_wait_timeout = " + lockWaitTimeoutSeconds);
+                try {
+                    statement.execute(ddl);
+                } finally {
+                    // Pooled connection: restore the default for the next borrower
+                    statement.execute("SET SESSION lock_wait_timeout = DEFAULT");
+                }
+            }
+            return null;
+        });
+    }
+
+    private static String checkedName(ChangeLogPartition partition) {
+        if (!PARTITION_NAME.matcher(partition.name()).matches()) {
+            throw new IllegalArgumentException("Unexpected partition name: " + partition.name());
+        }
+        return partition.name();
+    }
+}
@@ -2,18 +2,25 @@ package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
 
 import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
 import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.StringJoiner;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 @Profile("mysql")
@@ -21,35 +28,96 @@ import org.springframework.stereotype.Repository;
 public class MysqlChangeLogRepository implements ChangeLogRepository {
 
     private static final RowMapper<BusinessChangeEvent> CHANGE_EVENT_ROW_MAPPER = MysqlChangeLogRepository::mapEvent;
+    /**
+     * Modulus of the indexed change_log.partition_key column ({@code business_id % 16}).
+     * A sync partition owns the keys congruent to it, so the worker count must divide it.
+     */
+    static final int PARTITION_KEYS = 16;
 
     private final JdbcTemplate jdbcTemplate;
 
-    public MysqlChangeLogRepository(JdbcTemplate jdbcTemplate) {
+    public MysqlChangeLogRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.index-sync.workers:4}") int partitionCount) {
+        if (partitionCount <= 0 || PARTITION_KEYS % partitionCount != 0) {
+            throw new IllegalStateException("app.index-sync.workers must divide " + PARTITION_KEYS
+                    + " (change_log.partition_key), got " + partitionCount);
+        }
         this.jdbcTemplate = jdbcTemplate;
     }
 
     @Override
-    public void append(long businessId, ChangeType changeType) {
-        jdbcTemplate.update(
-            "INSERT INTO change_log (business_id, change_type, processed) VALUES (?, ?, 0)",
-            businessId,
-            changeType.name()
-        );
+    public BusinessChangeEvent append(long businessId, ChangeType changeType) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO change_log (business_id, change_type, processed) VALUES (?, ?, 0)",
+                Statement.RETURN_GENERATED_KEYS
+            );
+            statement.setLong(1, businessId);
+            statement.setString(2, changeType.name());
+            return statement;
+        }, keyHolder);
+        return new BusinessChangeEvent(keyHolder.getKey().longValue(), businessId, changeType, Instant.now());
     }
 
     @Override
-    public List<BusinessChangeEvent> pollUnprocessed(int limit) {
-        return jdbcTemplate.query(
-            """
-                SELECT id, business_id, change_type, created_at
-                FROM change_log
-                WHERE processed = 0
-                ORDER BY id ASC
-                LIMIT ?
-            """,
-            CHANGE_EVENT_ROW_MAPPER,
-            limit
+    public List<BusinessChangeEvent> appendAll(List<Long> businessIds, ChangeType changeType) {
+        if (businessIds.isEmpty()) {
+            return List.of();
+        }
+        // Sent as one multi-row INSERT (rewriteBatchedStatements); keys come back in row order
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            connection -> connection.prepareStatement(
+                "INSERT INTO change_log (business_id, change_type, processed) VALUES (?, ?, 0)",
+                Statement.RETURN_GENERATED_KEYS
+            ),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement statement, int i) throws SQLException {
+                    statement.setLong(1, businessIds.get(i));
+                    statement.setString(2, changeType.name());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return businessIds.size();
+                }
+            },
+            keyHolder
         );
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        Instant now = Instant.now();
+        List<BusinessChangeEvent> appended = new ArrayList<>(businessIds.size());
+        for (int i = 0; i < businessIds.size(); i++) {
+            long eventId = ((Number) keys.get(i).values().iterator().next()).longValue();
+            appended.add(new BusinessChangeEvent(eventId, businessIds.get(i), changeType, now));
+        }
+        return appended;
+    }
+
+    /**
+     * One index range per partition key of the partition, each on
+     * (processed, partition_key, id) and already in id order, merged by MySQL.
+     */
+    @Override
+    public List<BusinessChangeEvent> pollUnprocessed(int limit, int partition, int partitionCount) {
+        StringJoiner ranges = new StringJoiner(" UNION ALL ", "", " ORDER BY id ASC LIMIT ?");
+        List<Object> args = new ArrayList<>();
+        // business_id % partitionCount == partition exactly when partitionCount divides PARTITION_KEYS
+        for (int key = partition; key < PARTITION_KEYS; key += partitionCount) {
+            ranges.add("""
+                (SELECT id, business_id, change_type, created_at
+                 FROM change_log
+                 WHERE processed = 0 AND partition_key = ?
+                 ORDER BY id ASC
+                 LIMIT ?)""");
+            args.add(key);
+            args.add(limit);
+        }
+        args.add(limit);
+        return jdbcTemplate.query(ranges.toString(), CHANGE_EVENT_ROW_MAPPER, args.toArray());
     }
 
     @Override
@@ -69,24 +137,74 @@ public class MysqlChangeLogRepository implements ChangeLogRepository {
     }
 
     @Override
-    public int countUnprocessed() {
-        Integer count = jdbcTemplate.queryForObject(
-            "SELECT COUNT(*) FROM change_log WHERE processed = 0",
-            Integer.class
+    public List<BusinessChangeEvent> findAfter(long afterId, int limit) {
+        return jdbcTemplate.query(
+            """
+                SELECT id, business_id, change_type, created_at
+                FROM change_log
+                WHERE id > ?
+                ORDER BY id ASC
+                LIMIT ?
+            """,
+            CHANGE_EVENT_ROW_MAPPER,
+            afterId,
+            limit
         );
-        return count == null ? 0 : count;
     }
 
     @Override
-    public Optional<Instant> oldestUnprocessedCreatedAt() {
-        Timestamp timestamp = jdbcTemplate.queryForObject(
-            "SELECT MIN(created_at) FROM change_log WHERE processed = 0",
-            Timestamp.class
+    public int deleteProcessedBefore(Instant cutoff, int limit) {
+        // Plain consistent read, then primary-key deletes: no range locks that could reach
+        // the append end of the table or rows the sync workers are about to mark
+        List<Long> ids = jdbcTemplate.queryForList(
+            """
+                SELECT id
+                FROM change_log
+                WHERE processed = 1
+                  AND created_at < ?
+                ORDER BY created_at ASC
+                LIMIT ?
+            """,
+            Long.class,
+            Timestamp.from(cutoff),
+            limit
         );
-        if (timestamp == null) {
-            return Optional.empty();
+        if (ids.isEmpty()) {
+            return 0;
         }
-        return Optional.of(timestamp.toInstant());
+        String placeholders = ids.stream().map(value -> "?").collect(Collectors.joining(", "));
+        return jdbcTemplate.update(
+            "DELETE FROM change_log WHERE id IN (%s) AND processed = 1".formatted(placeholders),
+            ids.toArray()
+        );
+    }
+
+    @Override
+    public long maxId() {
+        // Reads the end of the primary key, independent of the backlog size
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM change_log", Long.class);
+        return maxId == null ? 0L : maxId;
+    }
+
+    @Override
+    public long firstRetainedId() {
+        Long firstId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM change_log", Long.class);
+        return firstId == null ? maxId() + 1 : firstId;
+    }
+
+    @Override
+    public long processedUpTo() {
+        // Both subqueries are single index dives: (processed, id) and the primary key
+        Long processedUpTo = jdbcTemplate.queryForObject(
+            """
+                SELECT COALESCE(
+                  (SELECT MIN(id) FROM change_log WHERE processed = 0) - 1,
+                  (SELECT MAX(id) FROM change_log),
+                  0)
+            """,
+            Long.class
+        );
+        return processedUpTo == null ? 0L : processedUpTo;
     }
 
     private static BusinessChangeEvent mapEvent(ResultSet rs, int rowNum) throws SQLException {
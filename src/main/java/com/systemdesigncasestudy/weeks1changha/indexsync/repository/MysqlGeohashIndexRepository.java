@@ -1,31 +1,49 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
 
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfig;
 import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfigService;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneTrie;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.GeohashIndexEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.jdbc.core.JdbcTemplate;
+import java.util.stream.Collectors;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * geohash_index split across the configured {@link GeohashIndexShards}: a geohash in a hot
+ * zone is stored in the zone's shard, any other in the default shard. Writes insert into the
+ * target shard first and then remove the business from every other shard, so a business that
+ * moved zones is never in neither shard.
+ *
+ * The writes are not atomic across shards. {@code @Transactional} binds only the primary
+ * DataSource, so a shard with a pool of its own commits each statement on its own. A failure
+ * after the insert can therefore leave the business in its old shard as well. The index sync
+ * retries the event, and IndexReconciliationJob removes such rows as orphans.
+ */
 @Repository
 public class MysqlGeohashIndexRepository implements GeohashIndexRepository {
 
-    private final JdbcTemplate primaryJdbcTemplate;
-    private final JdbcTemplate hotJdbcTemplate;
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private final GeohashIndexShards shards;
     private final HotZoneConfigService hotZoneConfigService;
-    private final RedisGeoIndexRepository redisGeoIndexRepository;
+    private final GeoIndex geoIndex;
 
     public MysqlGeohashIndexRepository(
-            @Qualifier("primaryJdbcTemplate") JdbcTemplate primaryJdbcTemplate,
-            @Qualifier("hotJdbcTemplate") JdbcTemplate hotJdbcTemplate,
+            GeohashIndexShards shards,
             HotZoneConfigService hotZoneConfigService,
-            RedisGeoIndexRepository redisGeoIndexRepository) {
-        this.primaryJdbcTemplate = primaryJdbcTemplate;
-        this.hotJdbcTemplate = hotJdbcTemplate;
+            GeoIndex geoIndex) {
+        this.shards = shards;
         this.hotZoneConfigService = hotZoneConfigService;
-        this.redisGeoIndexRepository = redisGeoIndexRepository;
+        this.geoIndex = geoIndex;
     }
 
     @Override
@@ -38,56 +56,190 @@ public class MysqlGeohashIndexRepository implements GeohashIndexRepository {
     @Transactional
     public void upsertWithCoordinates(String geohash, long businessId, double latitude, double longitude) {
         upsertMysql(geohash, businessId);
-        // Sync to Redis GeoSet
-        redisGeoIndexRepository.add(businessId, latitude, longitude);
+        // Sync to the search-side geo index (Redis GeoSet or in-process)
+        geoIndex.add(businessId, latitude, longitude);
     }
 
     private void upsertMysql(String geohash, long businessId) {
-        String tableName = getTableForGeohash(geohash);
-        JdbcTemplate targetTemplate = getTemplateForGeohash(geohash);
-
-        // Remove from the OTHER table/DB to ensure no stale data if zone changed
-        if (targetTemplate == hotJdbcTemplate) {
-            primaryJdbcTemplate.update("DELETE FROM geohash_index WHERE business_id = ?", businessId);
-        } else {
-            hotJdbcTemplate.update("DELETE FROM geohash_index_hot WHERE business_id = ?", businessId);
-        }
+        GeohashIndexShard target = route(geohash);
 
         String sql = String.format(
                 "INSERT INTO %s (geohash, business_id) VALUES (?, ?) ON DUPLICATE KEY UPDATE geohash = VALUES(geohash)",
-                tableName);
-        targetTemplate.update(sql, geohash, businessId);
+                target.tableName());
+        target.template().update(sql, geohash, businessId);
+
+        // Remove from the OTHER shards to ensure no stale data if zone changed
+        for (GeohashIndexShard shard : shards.all()) {
+            if (!shard.equals(target)) {
+                shard.template().update(
+                        String.format("DELETE FROM %s WHERE business_id = ?", shard.tableName()), businessId);
+            }
+        }
     }
 
     @Override
     @Transactional
     public void deleteByBusinessId(long businessId) {
-        primaryJdbcTemplate.update("DELETE FROM geohash_index WHERE business_id = ?", businessId);
-        hotJdbcTemplate.update("DELETE FROM geohash_index_hot WHERE business_id = ?", businessId);
-        // Also remove from Redis
-        redisGeoIndexRepository.remove(businessId);
+        for (GeohashIndexShard shard : shards.all()) {
+            shard.template().update(
+                    String.format("DELETE FROM %s WHERE business_id = ?", shard.tableName()), businessId);
+        }
+        // Also remove from the geo index
+        geoIndex.remove(businessId);
     }
 
     @Override
-    public Set<Long> findBusinessIdsByPrefix(String geohashPrefix) {
-        String tableName = getTableForGeohash(geohashPrefix);
-        JdbcTemplate template = getTemplateForGeohash(geohashPrefix);
-        String sql = String.format("SELECT business_id FROM %s WHERE geohash LIKE ?", tableName);
-        List<Long> ids = template.queryForList(sql, Long.class, geohashPrefix + "%");
-        return new HashSet<>(ids);
+    @Transactional
+    public void applyBatch(List<GeohashIndexEntry> upserts, Collection<Long> deletedBusinessIds) {
+        Map<GeohashIndexShard, List<GeohashIndexEntry>> upsertsByShard = new LinkedHashMap<>();
+        for (GeohashIndexEntry entry : upserts) {
+            upsertsByShard.computeIfAbsent(route(entry.geohash()), shard -> new ArrayList<>()).add(entry);
+        }
+
+        upsertsByShard.forEach(MysqlGeohashIndexRepository::insertAll);
+        for (GeohashIndexShard shard : shards.all()) {
+            // Deleted businesses, and upserts routed to the OTHER shards in case their zone changed
+            List<Long> removed = new ArrayList<>(deletedBusinessIds);
+            upsertsByShard.forEach((target, entries) -> {
+                if (!target.equals(shard)) {
+                    removed.addAll(businessIds(entries));
+                }
+            });
+            deleteAll(shard, removed);
+        }
+
+        List<Long> deleted = new ArrayList<>(deletedBusinessIds);
+        GeoPoints.Builder points = new GeoPoints.Builder(upserts.size());
+        for (GeohashIndexEntry entry : upserts) {
+            points.add(entry.businessId(), entry.latitude(), entry.longitude());
+        }
+        geoIndex.update(points.build(), deleted);
+    }
+
+    private static List<Long> businessIds(List<GeohashIndexEntry> entries) {
+        return entries.stream().map(GeohashIndexEntry::businessId).toList();
     }
 
-    private String getTableForGeohash(String geohash) {
-        if (hotZoneConfigService.isHotZone(geohash)) {
-            return "geohash_index_hot";
+    /**
+     * DELETE FROM table WHERE business_id IN (...), in chunks of MAX_ROWS_PER_STATEMENT.
+     */
+    private static void deleteAll(GeohashIndexShard shard, List<Long> businessIds) {
+        for (int from = 0; from < businessIds.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Long> chunk = businessIds.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, businessIds.size()));
+            String placeholders = chunk.stream().map(value -> "?").collect(Collectors.joining(", "));
+            String sql = String.format("DELETE FROM %s WHERE business_id IN (%s)", shard.tableName(), placeholders);
+            shard.template().update(sql, chunk.toArray());
         }
-        return "geohash_index";
     }
 
-    private JdbcTemplate getTemplateForGeohash(String geohash) {
-        if (hotZoneConfigService.isHotZone(geohash)) {
-            return hotJdbcTemplate;
+    /**
+     * Multi-row INSERT ... ON DUPLICATE KEY UPDATE, in chunks of MAX_ROWS_PER_STATEMENT.
+     */
+    private static void insertAll(GeohashIndexShard shard, List<GeohashIndexEntry> entries) {
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<GeohashIndexEntry> chunk = entries.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, entries.size()));
+            String values = chunk.stream().map(entry -> "(?, ?)").collect(Collectors.joining(", "));
+            Object[] params = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                params[i * 2] = chunk.get(i).geohash();
+                params[i * 2 + 1] = chunk.get(i).businessId();
+            }
+            String sql = String.format(
+                    "INSERT INTO %s (geohash, business_id) VALUES %s ON DUPLICATE KEY UPDATE geohash = VALUES(geohash)",
+                    shard.tableName(), values);
+            shard.template().update(sql, params);
         }
-        return primaryJdbcTemplate;
+    }
+
+    /**
+     * Scatter-gather over every shard the cell {@code geohashPrefix} overlaps: the shard of
+     * the zone containing it (or the default shard) and the shards of zones nested inside it,
+     * under the current zones and under those replaced by a zone migration still in progress.
+     */
+    @Override
+    public Set<Long> findBusinessIdsByPrefix(String geohashPrefix) {
+        Set<GeohashIndexShard> targets = new LinkedHashSet<>();
+        for (HotZoneTrie zones : hotZoneConfigService.zonesForReads()) {
+            HotZoneConfig containing = zones.longestMatch(geohashPrefix);
+            targets.add(containing != null ? shards.named(containing.shard()) : shards.defaultShard());
+            for (HotZoneConfig zone : zones.nestedIn(geohashPrefix)) {
+                targets.add(shards.named(zone.shard()));
+            }
+        }
+        Set<Long> ids = new HashSet<>();
+        shards.scatter(targets, shard -> shard.template().queryForList(
+                String.format("SELECT business_id FROM %s WHERE geohash LIKE ?", shard.tableName()),
+                Long.class, geohashPrefix + "%")).forEach(ids::addAll);
+        return ids;
+    }
+
+    @Override
+    public String shardFor(String geohash) {
+        return route(geohash).name();
+    }
+
+    @Override
+    public GeohashIndexRows findByBusinessIdRange(long afterId, long toId) {
+        List<GeohashIndexShard> all = new ArrayList<>(shards.all());
+        List<Map<Long, String>> rows = shards.scatter(all, shard -> findByBusinessIdRange(shard, afterId, toId));
+        Map<String, Map<Long, String>> byShard = new LinkedHashMap<>();
+        for (int i = 0; i < all.size(); i++) {
+            byShard.put(all.get(i).name(), rows.get(i));
+        }
+        return new GeohashIndexRows(byShard);
+    }
+
+    /**
+     * Scans up to {@code limit} rows of {@code shardName} under {@code geohashPrefix}, in key
+     * order after ({@code afterGeohash}, {@code afterBusinessId}), and picks the businesses
+     * the current zones route to another shard.
+     */
+    public MisplacedIndexRows findMisplaced(
+            String shardName, String geohashPrefix, String afterGeohash, long afterBusinessId, int limit) {
+        GeohashIndexShard shard = shards.named(shardName);
+        String sql = String.format("""
+                SELECT geohash, business_id
+                FROM %s
+                WHERE geohash LIKE ? AND (geohash > ? OR (geohash = ? AND business_id > ?))
+                ORDER BY geohash, business_id
+                LIMIT ?
+                """, shard.tableName());
+        List<Long> misplaced = new ArrayList<>();
+        int[] scanned = { 0 };
+        String[] lastGeohash = { afterGeohash };
+        long[] lastBusinessId = { afterBusinessId };
+        shard.template().query(sql, rs -> {
+            String geohash = rs.getString("geohash");
+            long businessId = rs.getLong("business_id");
+            if (!route(geohash).equals(shard)) {
+                misplaced.add(businessId);
+            }
+            scanned[0]++;
+            lastGeohash[0] = geohash;
+            lastBusinessId[0] = businessId;
+        }, geohashPrefix + "%", afterGeohash, afterGeohash, afterBusinessId, limit);
+        return new MisplacedIndexRows(scanned[0], lastGeohash[0], lastBusinessId[0], misplaced);
+    }
+
+    /**
+     * Range scan on the business_id secondary index.
+     */
+    private static Map<Long, String> findByBusinessIdRange(GeohashIndexShard shard, long afterId, long toId) {
+        Map<Long, String> rows = new HashMap<>();
+        String sql = String.format(
+                "SELECT business_id, geohash FROM %s WHERE business_id > ? AND business_id <= ?", shard.tableName());
+        shard.template().query(sql, rs -> {
+            rows.put(rs.getLong("business_id"), rs.getString("geohash"));
+        }, afterId, toId);
+        return rows;
+    }
+
+    /**
+     * One hot zone lookup per geohash; the shard of its zone, or the default shard.
+     */
+    private GeohashIndexShard route(String geohash) {
+        return hotZoneConfigService.findConfig(geohash)
+                .map(zone -> shards.named(zone.shard()))
+                .orElse(shards.defaultShard());
     }
 }
@@ -1,7 +1,15 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
 
 import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfig;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneTrie;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.ZoneMigration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.TreeMap;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -16,11 +24,113 @@ public class MysqlHotZoneConfigRepository {
 
     public List<HotZoneConfig> findAllActive() {
         return jdbcTemplate.query(
-                "SELECT geohash_prefix, description, radius_limit, is_active FROM hot_zone_config WHERE is_active = TRUE",
+                "SELECT geohash_prefix, description, radius_limit, is_active, shard FROM hot_zone_config WHERE is_active = TRUE",
                 (rs, rowNum) -> new HotZoneConfig(
                         rs.getString("geohash_prefix"),
                         rs.getString("description"),
                         rs.getInt("radius_limit"),
-                        rs.getBoolean("is_active")));
+                        rs.getBoolean("is_active"),
+                        rs.getString("shard")));
+    }
+
+    /**
+     * Shard by prefix as last recorded, or empty if no routing was ever recorded. Locks the
+     * row until the surrounding transaction ends, so one instance records a change at a time.
+     */
+    public Optional<Map<String, String>> findRecordedRoutingForUpdate() {
+        List<String> routing = jdbcTemplate.query(
+                "SELECT routing FROM hot_zone_routing WHERE id = 1 FOR UPDATE",
+                (rs, rowNum) -> rs.getString("routing"));
+        if (routing.isEmpty() || routing.get(0) == null) {
+            return Optional.empty();
+        }
+        return Optional.of(decodeRouting(routing.get(0)));
+    }
+
+    public void saveRecordedRouting(Map<String, String> routing) {
+        jdbcTemplate.update("UPDATE hot_zone_routing SET routing = ? WHERE id = 1", encodeRouting(routing));
+    }
+
+    public void insertMigration(Map<String, String> previousRouting, List<String> prefixes) {
+        jdbcTemplate.update(
+                "INSERT INTO hot_zone_migration (previous_routing, prefixes) VALUES (?, ?)",
+                encodeRouting(previousRouting), String.join(",", prefixes));
+    }
+
+    /**
+     * Migrations not completed yet, oldest first, with their saved cursors.
+     */
+    public List<ZoneMigration> findPendingMigrations() {
+        return jdbcTemplate.query(
+                """
+                SELECT id, previous_routing, prefixes, prefix_index, shard, after_geohash, after_business_id, created_at
+                FROM hot_zone_migration
+                ORDER BY id
+                """,
+                (rs, rowNum) -> new ZoneMigration(
+                        rs.getLong("id"),
+                        trieOf(decodeRouting(rs.getString("previous_routing"))),
+                        Arrays.asList(rs.getString("prefixes").split(",", -1)),
+                        new ZoneMigration.Cursor(
+                                rs.getInt("prefix_index"),
+                                rs.getString("shard"),
+                                rs.getString("after_geohash"),
+                                rs.getLong("after_business_id")),
+                        rs.getTimestamp("created_at").toInstant()));
+    }
+
+    /**
+     * Moves the cursor of a migration from {@code expected} to {@code next}; false if another
+     * instance moved it first or completed the migration.
+     */
+    public boolean updateCursor(long migrationId, ZoneMigration.Cursor expected, ZoneMigration.Cursor next) {
+        return jdbcTemplate.update(
+                """
+                UPDATE hot_zone_migration
+                SET prefix_index = ?, shard = ?, after_geohash = ?, after_business_id = ?
+                WHERE id = ? AND prefix_index = ? AND shard = ? AND after_geohash = ? AND after_business_id = ?
+                """,
+                next.prefixIndex(), next.shard(), next.afterGeohash(), next.afterBusinessId(),
+                migrationId, expected.prefixIndex(), expected.shard(), expected.afterGeohash(),
+                expected.afterBusinessId()) == 1;
+    }
+
+    /**
+     * Deletes a migration whose cursor is still at {@code expected}; false if another instance
+     * moved it or completed the migration first.
+     */
+    public boolean deleteMigration(long migrationId, ZoneMigration.Cursor expected) {
+        return jdbcTemplate.update(
+                """
+                DELETE FROM hot_zone_migration
+                WHERE id = ? AND prefix_index = ? AND shard = ? AND after_geohash = ? AND after_business_id = ?
+                """,
+                migrationId, expected.prefixIndex(), expected.shard(), expected.afterGeohash(),
+                expected.afterBusinessId()) == 1;
+    }
+
+    // prefix=shard pairs, comma separated: geohash prefixes and shard names contain neither
+    private static String encodeRouting(Map<String, String> routing) {
+        StringJoiner joined = new StringJoiner(",");
+        new TreeMap<>(routing).forEach((prefix, shard) -> joined.add(prefix + "=" + shard));
+        return joined.toString();
+    }
+
+    private static Map<String, String> decodeRouting(String encoded) {
+        Map<String, String> routing = new TreeMap<>();
+        if (encoded.isEmpty()) {
+            return routing;
+        }
+        for (String pair : encoded.split(",")) {
+            int separator = pair.indexOf('=');
+            routing.put(pair.substring(0, separator), pair.substring(separator + 1));
+        }
+        return routing;
+    }
+
+    private static HotZoneTrie trieOf(Map<String, String> routing) {
+        List<HotZoneConfig> zones = new ArrayList<>(routing.size());
+        routing.forEach((prefix, shard) -> zones.add(new HotZoneConfig(prefix, null, 0, true, shard)));
+        return HotZoneTrie.of(zones);
     }
 }
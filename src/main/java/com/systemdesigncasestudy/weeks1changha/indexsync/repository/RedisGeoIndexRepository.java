@@ -1,79 +1,584 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
 
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.geo.InterleavedGeohash;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.geo.Circle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
 import org.springframework.data.geo.Point;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.data.redis.domain.geo.GeoShape;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
+/**
+ * Redis GeoSet index split into one key per region, the geohash cell of
+ * {@code app.geo-index.redis.region-precision} characters around each business
+ * ({@code geo:businesses:{wydm}}), so reads and writes spread over many keys and, with Redis
+ * Cluster, over many nodes.
+ *
+ * A search sends one GEOSEARCH per region overlapping the search area in a single pipeline
+ * and merges the distance-sorted results. The region of every indexed business is kept in
+ * {@value #MEMBER_REGION_BUCKETS} hashes ({@code geo:businesses:member-region:{id % buckets}}),
+ * which writes need to remove a business that moved to another region and position lookups
+ * need to find its key. {@code geo:businesses:{regions}} lists the region keys in use.
+ *
+ * Until the first bulk load in this layout commits, the single GeoSet of the previous layout
+ * ({@code geo:businesses}) keeps serving: reads merge it with the region keys, and writes
+ * update the businesses it already holds (ZADD XX, ZREM) besides writing the region keys.
+ * It is never recreated, and the commit deletes it.
+ */
+@Profile("!geo-inmemory")
 @Repository
-public class RedisGeoIndexRepository {
+public class RedisGeoIndexRepository implements GeoIndex {
 
     private static final Logger log = LoggerFactory.getLogger(RedisGeoIndexRepository.class);
     private static final String GEO_KEY = "geo:businesses";
+    private static final String LOADING_KEY = GEO_KEY + ":loading";
+    private static final String CHECKPOINT_KEY = LOADING_KEY + ":checkpoint";
+    private static final int MEMBER_REGION_BUCKETS = 64;
+    private static final double METERS_PER_DEGREE = 111_320d;
+    /** BYBOX measures the box on the sphere; pad it and filter by exact bounds afterwards. */
+    private static final double BOX_PADDING = 1.1d;
+    /** Keeps single GEOADD commands small enough not to stall Redis for other clients. */
+    private static final int MAX_MEMBERS_PER_GEOADD = 1000;
+    /** Pipeline results as the raw replies, without the template's string serializer. */
+    private static final RedisSerializer<byte[]> RAW = RedisSerializer.byteArray();
+    /** How often reads re-check whether another instance's bulk load removed the legacy key. */
+    private static final long LEGACY_CHECK_INTERVAL_MS = 10_000L;
 
     private final StringRedisTemplate redisTemplate;
+    private final int regionPrecision;
+    private volatile boolean legacyKeyPresent = true;
+    private volatile long legacyCheckedAt;
 
-    public RedisGeoIndexRepository(StringRedisTemplate redisTemplate) {
+    public RedisGeoIndexRepository(
+            StringRedisTemplate redisTemplate,
+            @Value("${app.geo-index.redis.region-precision:4}") int regionPrecision) {
         this.redisTemplate = redisTemplate;
+        this.regionPrecision = regionPrecision;
+    }
+
+    @Override
+    public void add(long businessId, double latitude, double longitude) {
+        GeoPoints.Builder points = new GeoPoints.Builder(1);
+        points.add(businessId, latitude, longitude);
+        update(points.build(), List.of());
+    }
+
+    @Override
+    public void remove(long businessId) {
+        update(GeoPoints.EMPTY, List.of(businessId));
     }
 
     /**
-     * GEOADD geo:businesses longitude latitude businessId
+     * Looks up the current regions (pipelined HMGET), then in one pipeline: GEOADD per new
+     * region, ZREM from the old region of moved and removed businesses, SADD of the new
+     * regions and HSET/HDEL of the member regions.
      */
-    public void add(long businessId, double latitude, double longitude) {
-        redisTemplate.opsForGeo().add(GEO_KEY,
-                new Point(longitude, latitude),
-                String.valueOf(businessId));
+    @Override
+    public void update(GeoPoints upserts, Collection<Long> removedBusinessIds) {
+        if (upserts.size() == 0 && removedBusinessIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(upserts.size() + removedBusinessIds.size());
+        for (int i = 0; i < upserts.size(); i++) {
+            ids.add(upserts.ids()[i]);
+        }
+        ids.addAll(removedBusinessIds);
+        Map<Long, String> previousRegions = memberRegions(GEO_KEY, ids);
+        boolean legacy = legacyKeyPresent();
+
+        Map<String, Map<byte[], Point>> additions = new HashMap<>();
+        Map<String, List<byte[]>> removals = new HashMap<>();
+        Map<Integer, Map<byte[], byte[]>> regionUpdates = new HashMap<>();
+        Map<Integer, List<byte[]>> regionDeletes = new HashMap<>();
+        for (int i = 0; i < upserts.size(); i++) {
+            long id = upserts.ids()[i];
+            String region = regionOf(upserts.latitudes()[i], upserts.longitudes()[i]);
+            additions.computeIfAbsent(region, key -> new LinkedHashMap<>())
+                    .put(memberBytes(id), new Point(upserts.longitudes()[i], upserts.latitudes()[i]));
+            String previous = previousRegions.get(id);
+            if (previous != null && !previous.equals(region)) {
+                removals.computeIfAbsent(previous, key -> new ArrayList<>()).add(memberBytes(id));
+            }
+            regionUpdates.computeIfAbsent(bucketOf(id), key -> new LinkedHashMap<>())
+                    .put(memberBytes(id), bytes(region));
+        }
+        for (Long id : removedBusinessIds) {
+            String previous = previousRegions.get(id);
+            if (previous != null) {
+                removals.computeIfAbsent(previous, key -> new ArrayList<>()).add(memberBytes(id));
+            }
+            regionDeletes.computeIfAbsent(bucketOf(id), key -> new ArrayList<>()).add(memberBytes(id));
+        }
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            additions.forEach((region, members) -> connection.geoCommands().geoAdd(regionKey(GEO_KEY, region), members));
+            removals.forEach((region, members) ->
+                    connection.zSetCommands().zRem(regionKey(GEO_KEY, region), members.toArray(byte[][]::new)));
+            if (!additions.isEmpty()) {
+                connection.setCommands().sAdd(bytes(regionsKey(GEO_KEY)),
+                        additions.keySet().stream().map(RedisGeoIndexRepository::bytes).toArray(byte[][]::new));
+            }
+            regionUpdates.forEach((bucket, fields) -> connection.hashCommands().hMSet(memberRegionKey(GEO_KEY, bucket), fields));
+            regionDeletes.forEach((bucket, fields) ->
+                    connection.hashCommands().hDel(memberRegionKey(GEO_KEY, bucket), fields.toArray(byte[][]::new)));
+            if (legacy) {
+                for (int i = 0; i < upserts.size(); i++) {
+                    // XX: only members it already holds, so a deleted legacy key is never recreated
+                    connection.zSetCommands().zAdd(bytes(GEO_KEY),
+                            InterleavedGeohash.REDIS.encode(upserts.latitudes()[i], upserts.longitudes()[i]),
+                            memberBytes(upserts.ids()[i]), RedisZSetCommands.ZAddArgs.ifExists());
+                }
+                if (!removedBusinessIds.isEmpty()) {
+                    connection.zSetCommands().zRem(bytes(GEO_KEY),
+                            removedBusinessIds.stream().map(RedisGeoIndexRepository::memberBytes).toArray(byte[][]::new));
+                }
+            }
+            return null;
+        }, RAW);
     }
 
     /**
-     * ZREM geo:businesses businessId
+     * Pipelined GEOSEARCH geo:businesses:<region> FROMLONLAT lon lat BYRADIUS radius m WITHDIST
+     * ASC COUNT limit, one per region overlapping the circle. Every region returns its own
+     * nearest {@code limit}, so the merged nearest {@code limit} are exact. While the legacy key
+     * exists it is searched too, and a business found in both is taken once.
      */
-    public void remove(long businessId) {
-        redisTemplate.opsForZSet().remove(GEO_KEY, String.valueOf(businessId));
+    @Override
+    public GeoHits findByRadius(double latitude, double longitude, double radiusMeters, int limit) {
+        List<String> regions = List.copyOf(regionsAround(latitude, longitude, radiusMeters));
+        boolean legacy = legacyKeyPresent();
+        GeoReference<byte[]> center = GeoReference.fromCoordinate(longitude, latitude);
+        GeoShape circle = GeoShape.byRadius(new Distance(radiusMeters, RedisGeoCommands.DistanceUnit.METERS));
+        RedisGeoCommands.GeoSearchCommandArgs args = RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs()
+                .includeDistance()
+                .sortAscending()
+                .limit(limit);
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String region : regions) {
+                connection.geoCommands().geoSearch(regionKey(GEO_KEY, region), center, circle, args);
+            }
+            if (legacy) {
+                connection.geoCommands().geoSearch(bytes(GEO_KEY), center, circle, args);
+            }
+            return null;
+        }, RAW);
+
+        GeoHits.Builder hits = new GeoHits.Builder();
+        Set<Long> seen = legacy ? new HashSet<>() : null;
+        for (Object reply : replies) {
+            for (GeoResult<RedisGeoCommands.GeoLocation<byte[]>> result : geoResults(reply)) {
+                Long id = parseMember(result.getContent().getName());
+                if (id != null && (seen == null || seen.add(id))) {
+                    hits.add(id, result.getDistance().getValue());
+                }
+            }
+        }
+        return hits.build(limit);
+    }
+
+    /**
+     * Pipelined ZCOUNT over the score ranges of the covering geohash cells in every region
+     * overlapping the circle, scaled down to the circle area. O(log N) per cell and region
+     * and no members are transferred, at the cost of being an estimate. While the legacy key
+     * exists only it is counted: it holds every business indexed before the upgrade.
+     */
+    @Override
+    public int countByRadius(double latitude, double longitude, double radiusMeters) {
+        InterleavedGeohash.Covering covering = InterleavedGeohash.REDIS.cover(latitude, longitude, radiusMeters);
+        List<byte[]> keys = new ArrayList<>();
+        if (legacyKeyPresent()) {
+            keys.add(bytes(GEO_KEY));
+        } else {
+            regionsAround(latitude, longitude, radiusMeters).forEach(region -> keys.add(regionKey(GEO_KEY, region)));
+        }
+        List<Object> counts = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] key : keys) {
+                for (int cell = 0; cell < covering.cellCount(); cell++) {
+                    // ZCOUNT bounds are inclusive; scores are integers so the exclusive end is to - 1
+                    connection.zSetCommands().zCount(key, covering.from(cell), covering.to(cell) - 1);
+                }
+            }
+            return null;
+        }, RAW);
+
+        long cellsCount = 0L;
+        for (Object count : counts) {
+            if (count instanceof Long value) {
+                cellsCount += value;
+            }
+        }
+        return covering.scaleToCircle(cellsCount, radiusMeters);
+    }
+
+    /**
+     * Pipelined GEOSEARCH geo:businesses:<region> FROMLONLAT centerLon centerLat BYBOX width height m
+     * WITHCOORD COUNT limit, one per region overlapping the box. The box is padded slightly and
+     * matches are filtered by the exact latitude/longitude bounds. While the legacy key exists
+     * it is searched too, and a business found in both is taken once.
+     */
+    @Override
+    public GeoPoints findInBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, int limit) {
+        double centerLatitude = (minLatitude + maxLatitude) / 2;
+        double centerLongitude = (minLongitude + maxLongitude) / 2;
+        double heightMeters = (maxLatitude - minLatitude) * METERS_PER_DEGREE;
+        double widthMeters = (maxLongitude - minLongitude) * METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(centerLatitude));
+
+        Set<String> regions = GeohashUtils.cellsInBox(minLatitude, minLongitude, maxLatitude, maxLongitude, regionPrecision);
+        boolean legacy = legacyKeyPresent();
+        GeoReference<byte[]> center = GeoReference.fromCoordinate(centerLongitude, centerLatitude);
+        GeoShape box = GeoShape.byBox(widthMeters * BOX_PADDING, heightMeters * BOX_PADDING,
+                RedisGeoCommands.DistanceUnit.METERS);
+        RedisGeoCommands.GeoSearchCommandArgs args = RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs()
+                .includeCoordinates()
+                .limit(limit);
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String region : regions) {
+                connection.geoCommands().geoSearch(regionKey(GEO_KEY, region), center, box, args);
+            }
+            if (legacy) {
+                connection.geoCommands().geoSearch(bytes(GEO_KEY), center, box, args);
+            }
+            return null;
+        }, RAW);
+
+        GeoPoints.Builder points = new GeoPoints.Builder(limit);
+        Set<Long> seen = legacy ? new HashSet<>() : null;
+        for (Object reply : replies) {
+            for (GeoResult<RedisGeoCommands.GeoLocation<byte[]>> result : geoResults(reply)) {
+                Point point = result.getContent().getPoint();
+                // The builder keeps the first limit points across all regions
+                if (point == null
+                        || point.getY() < minLatitude || point.getY() >= maxLatitude
+                        || point.getX() < minLongitude || point.getX() >= maxLongitude) {
+                    continue;
+                }
+                Long id = parseMember(result.getContent().getName());
+                if (id != null && (seen == null || seen.add(id))) {
+                    points.add(id, point.getY(), point.getX());
+                }
+            }
+        }
+        return points.build();
     }
 
     /**
-     * GEORADIUS geo:businesses longitude latitude radius m ASC COUNT 5000
-     * Returns business IDs within the given radius, sorted by distance ascending.
+     * Pipelined HMGET of the member regions, then pipelined GEOPOS geo:businesses:<region> businessId...
+     * Businesses without a region are looked up in the legacy key while it exists.
      */
-    public List<Long> findByRadius(double latitude, double longitude, double radiusMeters) {
-        Distance distance = new Distance(radiusMeters, RedisGeoCommands.DistanceUnit.METERS);
-        Circle circle = new Circle(new Point(longitude, latitude), distance);
-
-        GeoResults<RedisGeoCommands.GeoLocation<String>> geoResults = redisTemplate.opsForGeo().radius(GEO_KEY, circle,
-                RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
-                        .includeDistance()
-                        .sortAscending()
-                        .limit(5000));
-
-        List<Long> ids = new ArrayList<>();
-        if (geoResults != null) {
-            for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : geoResults) {
-                try {
-                    ids.add(Long.parseLong(result.getContent().getName()));
-                } catch (NumberFormatException e) {
-                    log.warn("Invalid business ID in Redis geo set: {}",
-                            result.getContent().getName());
+    @Override
+    public GeoPoints findPositions(Collection<Long> businessIds) {
+        if (businessIds.isEmpty()) {
+            return GeoPoints.EMPTY;
+        }
+        Map<String, List<Long>> byRegion = new LinkedHashMap<>();
+        Map<Long, String> memberRegions = memberRegions(GEO_KEY, businessIds);
+        memberRegions.forEach((id, region) -> byRegion.computeIfAbsent(region, key -> new ArrayList<>()).add(id));
+        if (legacyKeyPresent()) {
+            List<Long> unplaced = new ArrayList<>();
+            for (Long id : businessIds) {
+                if (!memberRegions.containsKey(id)) {
+                    unplaced.add(id);
                 }
             }
+            if (!unplaced.isEmpty()) {
+                // Keyed by the legacy key name, which no geohash region can equal
+                byRegion.put(GEO_KEY, unplaced);
+            }
+        }
+        if (byRegion.isEmpty()) {
+            return GeoPoints.EMPTY;
         }
-        return ids;
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byRegion.forEach((region, ids) -> connection.geoCommands().geoPos(
+                    region.equals(GEO_KEY) ? bytes(GEO_KEY) : regionKey(GEO_KEY, region),
+                    ids.stream().map(RedisGeoIndexRepository::memberBytes).toArray(byte[][]::new)));
+            return null;
+        }, RAW);
+
+        GeoPoints.Builder points = new GeoPoints.Builder(businessIds.size());
+        int reply = 0;
+        for (List<Long> ids : byRegion.values()) {
+            List<?> positions = replies.get(reply++) instanceof List<?> list ? list : List.of();
+            for (int i = 0; i < positions.size() && i < ids.size(); i++) {
+                if (positions.get(i) instanceof Point point) {
+                    points.add(ids.get(i), point.getY(), point.getX());
+                }
+            }
+        }
+        return points.build();
     }
 
     /**
-     * Check if the geo set has any data (for fallback decision).
+     * Builds into a parallel set of keys under {@value #LOADING_KEY} and RENAMEs each over its
+     * live key on commit, so readers never see a half-loaded region (regions swap one by one).
+     * Progress lives in the {@value #CHECKPOINT_KEY} hash; loading keys without a checkpoint
+     * are unusable leftovers and are dropped.
      */
+    @Override
+    public GeoBulkLoad startBulkLoad() {
+        Map<String, String> checkpoint = new LinkedHashMap<>();
+        redisTemplate.<String, String>opsForHash().entries(CHECKPOINT_KEY).forEach(checkpoint::put);
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(LOADING_KEY))) {
+            // Left by an interrupted load into the former single loading key: start over
+            redisTemplate.delete(LOADING_KEY);
+            redisTemplate.delete(CHECKPOINT_KEY);
+            checkpoint.clear();
+        }
+        if (checkpoint.isEmpty()) {
+            deleteIndex(LOADING_KEY);
+        }
+
+        return new GeoBulkLoad() {
+            @Override
+            public Map<String, String> checkpoint() {
+                return checkpoint;
+            }
+
+            @Override
+            public void saveCheckpoint(String field, String value) {
+                redisTemplate.opsForHash().put(CHECKPOINT_KEY, field, value);
+            }
+
+            /**
+             * Pipelined GEOADD geo:businesses:loading:{region} lon lat id [lon lat id ...], at most
+             * {@value #MAX_MEMBERS_PER_GEOADD} members per command, plus SADD of the regions and
+             * HSET of the member regions
+             */
+            @Override
+            public void addAll(GeoPoints points) {
+                if (points.size() == 0) {
+                    return;
+                }
+                Map<String, List<Integer>> byRegion = new HashMap<>();
+                Map<Integer, Map<byte[], byte[]>> memberRegions = new HashMap<>();
+                for (int i = 0; i < points.size(); i++) {
+                    String region = regionOf(points.latitudes()[i], points.longitudes()[i]);
+                    byRegion.computeIfAbsent(region, key -> new ArrayList<>()).add(i);
+                    memberRegions.computeIfAbsent(bucketOf(points.ids()[i]), key -> new LinkedHashMap<>())
+                            .put(memberBytes(points.ids()[i]), bytes(region));
+                }
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    byRegion.forEach((region, slots) -> {
+                        byte[] key = regionKey(LOADING_KEY, region);
+                        for (int from = 0; from < slots.size(); from += MAX_MEMBERS_PER_GEOADD) {
+                            Map<byte[], Point> members = new LinkedHashMap<>();
+                            for (int slot : slots.subList(from, Math.min(slots.size(), from + MAX_MEMBERS_PER_GEOADD))) {
+                                members.put(memberBytes(points.ids()[slot]),
+                                        new Point(points.longitudes()[slot], points.latitudes()[slot]));
+                            }
+                            connection.geoCommands().geoAdd(key, members);
+                        }
+                    });
+                    connection.setCommands().sAdd(bytes(regionsKey(LOADING_KEY)),
+                            byRegion.keySet().stream().map(RedisGeoIndexRepository::bytes).toArray(byte[][]::new));
+                    memberRegions.forEach((bucket, fields) ->
+                            connection.hashCommands().hMSet(memberRegionKey(LOADING_KEY, bucket), fields));
+                    return null;
+                }, RAW);
+            }
+
+            /**
+             * RENAME every loading key over its live key and DEL live keys that were not loaded,
+             * including the former single geo:businesses set, then DEL the checkpoint
+             */
+            @Override
+            public void commit() {
+                Set<String> loaded = regions(LOADING_KEY);
+                Set<String> live = regions(GEO_KEY);
+                List<Object> loadedBuckets = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (int bucket = 0; bucket < MEMBER_REGION_BUCKETS; bucket++) {
+                        connection.keyCommands().exists(memberRegionKey(LOADING_KEY, bucket));
+                    }
+                    return null;
+                }, RAW);
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String region : loaded) {
+                        connection.keyCommands().rename(regionKey(LOADING_KEY, region), regionKey(GEO_KEY, region));
+                    }
+                    for (String region : live) {
+                        if (!loaded.contains(region)) {
+                            connection.keyCommands().del(regionKey(GEO_KEY, region));
+                        }
+                    }
+                    for (int bucket = 0; bucket < MEMBER_REGION_BUCKETS; bucket++) {
+                        if (Boolean.TRUE.equals(loadedBuckets.get(bucket))) {
+                            connection.keyCommands().rename(
+                                    memberRegionKey(LOADING_KEY, bucket), memberRegionKey(GEO_KEY, bucket));
+                        } else {
+                            connection.keyCommands().del(memberRegionKey(GEO_KEY, bucket));
+                        }
+                    }
+                    if (loaded.isEmpty()) {
+                        connection.keyCommands().del(bytes(regionsKey(GEO_KEY))); // Nothing was loaded: the index is empty
+                    } else {
+                        connection.keyCommands().rename(bytes(regionsKey(LOADING_KEY)), bytes(regionsKey(GEO_KEY)));
+                    }
+                    connection.keyCommands().del(bytes(GEO_KEY));
+                    connection.keyCommands().del(bytes(CHECKPOINT_KEY));
+                    return null;
+                }, RAW);
+                legacyKeyPresent = false;
+            }
+        };
+    }
+
+    /**
+     * Check if any region has been indexed (for bulk-load decision). An index still in the
+     * legacy single key counts as empty, so the bulk load rebuilds it while the key serves.
+     */
+    @Override
     public boolean hasData() {
-        Long size = redisTemplate.opsForZSet().size(GEO_KEY);
-        return size != null && size > 0;
+        if (legacyKeyPresent()) {
+            return false;
+        }
+        Long regions = redisTemplate.opsForSet().size(regionsKey(GEO_KEY));
+        return regions != null && regions > 0;
+    }
+
+    /**
+     * Whether the single GeoSet of the previous layout still exists. Once gone it never comes
+     * back (nothing recreates it), so only a present key is re-checked, every
+     * {@value #LEGACY_CHECK_INTERVAL_MS}ms, to notice another instance's commit.
+     */
+    private boolean legacyKeyPresent() {
+        if (!legacyKeyPresent) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - legacyCheckedAt >= LEGACY_CHECK_INTERVAL_MS) {
+            legacyCheckedAt = now;
+            legacyKeyPresent = Boolean.TRUE.equals(redisTemplate.hasKey(GEO_KEY));
+        }
+        return legacyKeyPresent;
+    }
+
+    private String regionOf(double latitude, double longitude) {
+        return GeohashUtils.encode(latitude, longitude, regionPrecision);
+    }
+
+    /**
+     * Regions overlapping the bounding box of the circle.
+     */
+    private Set<String> regionsAround(double latitude, double longitude, double radiusMeters) {
+        double latitudeDelta = radiusMeters / METERS_PER_DEGREE;
+        double longitudeDelta = radiusMeters
+                / (METERS_PER_DEGREE * Math.max(0.01d, Math.cos(Math.toRadians(latitude))));
+        return GeohashUtils.cellsInBox(latitude - latitudeDelta, longitude - longitudeDelta,
+                latitude + latitudeDelta, longitude + longitudeDelta, regionPrecision);
+    }
+
+    /**
+     * Indexed region per business (pipelined HMGET per member-region bucket); businesses
+     * not in the index are left out.
+     */
+    private Map<Long, String> memberRegions(String baseKey, Collection<Long> businessIds) {
+        Map<Integer, List<Long>> byBucket = new LinkedHashMap<>();
+        for (Long id : businessIds) {
+            byBucket.computeIfAbsent(bucketOf(id), key -> new ArrayList<>()).add(id);
+        }
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byBucket.forEach((bucket, ids) -> connection.hashCommands().hMGet(memberRegionKey(baseKey, bucket),
+                    ids.stream().map(RedisGeoIndexRepository::memberBytes).toArray(byte[][]::new)));
+            return null;
+        }, RAW);
+
+        Map<Long, String> regions = new HashMap<>();
+        int reply = 0;
+        for (List<Long> ids : byBucket.values()) {
+            List<?> values = replies.get(reply++) instanceof List<?> list ? list : List.of();
+            for (int i = 0; i < values.size() && i < ids.size(); i++) {
+                if (values.get(i) instanceof byte[] region) {
+                    regions.put(ids.get(i), new String(region, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return regions;
+    }
+
+    private Set<String> regions(String baseKey) {
+        Set<String> regions = redisTemplate.opsForSet().members(regionsKey(baseKey));
+        return regions != null ? regions : Set.of();
+    }
+
+    /**
+     * Drops a whole index: its region keys, member regions and regions set.
+     */
+    private void deleteIndex(String baseKey) {
+        Set<String> regions = regions(baseKey);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String region : regions) {
+                connection.keyCommands().del(regionKey(baseKey, region));
+            }
+            for (int bucket = 0; bucket < MEMBER_REGION_BUCKETS; bucket++) {
+                connection.keyCommands().del(memberRegionKey(baseKey, bucket));
+            }
+            connection.keyCommands().del(bytes(regionsKey(baseKey)));
+            return null;
+        }, RAW);
+    }
+
+    // Hash tags keep a loading key in the same Redis Cluster slot as its live key, for RENAME
+
+    private static byte[] regionKey(String baseKey, String region) {
+        return bytes(baseKey + ":{" + region + "}");
+    }
+
+    private static String regionsKey(String baseKey) {
+        return baseKey + ":{regions}";
+    }
+
+    private static byte[] memberRegionKey(String baseKey, int bucket) {
+        return bytes(baseKey + ":member-region:{" + bucket + "}");
+    }
+
+    private static int bucketOf(long businessId) {
+        return (int) Math.floorMod(businessId, (long) MEMBER_REGION_BUCKETS);
+    }
+
+    private static byte[] memberBytes(long businessId) {
+        return bytes(String.valueOf(businessId));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Long parseMember(byte[] name) {
+        String member = new String(name, StandardCharsets.UTF_8);
+        try {
+            return Long.parseLong(member);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid business ID in Redis geo set: {}", member);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<GeoResult<RedisGeoCommands.GeoLocation<byte[]>>> geoResults(Object reply) {
+        return reply instanceof GeoResults<?> results
+                ? (List<GeoResult<RedisGeoCommands.GeoLocation<byte[]>>>) (List<?>) results.getContent()
+                : List.of();
     }
 }
@@ -0,0 +1,95 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.business.repository.BusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Live number of indexed businesses per geohash cell of precision {@value #PRECISION}
+ * (about 1.2km x 0.6km), used to estimate how many candidates a search radius would pull.
+ *
+ * Index sync moves counts as it applies changes; a periodic rebuild from business replaces
+ * the whole map, which also absorbs bulk loads and any counting drift in between.
+ */
+@Component
+public class BusinessDensityMap {
+
+    private static final Logger log = LoggerFactory.getLogger(BusinessDensityMap.class);
+    private static final int PRECISION = 6;
+    private static final double METERS_PER_DEGREE = 111_320d;
+
+    private final BusinessRepository businessRepository;
+    private volatile Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    public BusinessDensityMap(BusinessRepository businessRepository) {
+        this.businessRepository = businessRepository;
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.density.rebuild-delay-ms:3600000}")
+    public void rebuild() {
+        try {
+            Map<String, AtomicInteger> rebuilt = new ConcurrentHashMap<>();
+            businessRepository.countActiveByGeohashPrefix(PRECISION)
+                    .forEach((cell, count) -> rebuilt.put(cell, new AtomicInteger(count)));
+            counts = rebuilt;
+            log.info("Rebuilt business density map: {} cells", rebuilt.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild business density map", e);
+        }
+    }
+
+    /**
+     * Moves counts for one applied sync batch: {@code removed} are the previously indexed
+     * positions, {@code added} the positions now indexed.
+     */
+    public void onIndexed(GeoPoints removed, GeoPoints added) {
+        Map<String, AtomicInteger> current = counts;
+        for (int i = 0; i < removed.size(); i++) {
+            AtomicInteger count = current.get(cellOf(removed.latitudes()[i], removed.longitudes()[i]));
+            if (count != null) {
+                count.decrementAndGet();
+            }
+        }
+        for (int i = 0; i < added.size(); i++) {
+            current.computeIfAbsent(cellOf(added.latitudes()[i], added.longitudes()[i]), cell -> new AtomicInteger())
+                    .incrementAndGet();
+        }
+    }
+
+    /**
+     * Businesses per square meter around a point: the center cell and its eight neighbors
+     * averaged, so a radius reaching past the center cell is not judged by it alone.
+     */
+    public double densityAround(double latitude, double longitude) {
+        Map<String, AtomicInteger> current = counts;
+        long businesses = 0L;
+        double areaSquareMeters = 0d;
+        for (String cell : GeohashUtils.centerAndNeighbors(latitude, longitude, PRECISION)) {
+            AtomicInteger count = current.get(cell);
+            if (count != null) {
+                businesses += Math.max(0, count.get());
+            }
+            areaSquareMeters += area(GeohashUtils.bounds(cell));
+        }
+        return areaSquareMeters > 0d ? businesses / areaSquareMeters : 0d;
+    }
+
+    private static String cellOf(double latitude, double longitude) {
+        return GeohashUtils.encode(latitude, longitude, PRECISION);
+    }
+
+    private static double area(GeohashUtils.CellBounds bounds) {
+        double heightMeters = (bounds.maxLatitude() - bounds.minLatitude()) * METERS_PER_DEGREE;
+        double centerLatitude = (bounds.minLatitude() + bounds.maxLatitude()) / 2;
+        double widthMeters = (bounds.maxLongitude() - bounds.minLongitude()) * METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(centerLatitude));
+        return heightMeters * widthMeters;
+    }
+}
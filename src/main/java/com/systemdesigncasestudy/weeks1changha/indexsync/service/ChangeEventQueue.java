@@ -0,0 +1,120 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-process push path for change events: one bounded queue per sync partition, consumed by
+ * {@link IndexSyncWorkers}. This is only a fast path. Every event is also in change_log, so a
+ * full queue drops the event and flags the partition for an early catch-up poll.
+ */
+@Component
+public class ChangeEventQueue {
+
+    private final ChangeLogBacklog changeLogBacklog;
+    private final boolean enabled;
+    private final int partitionCount;
+    private final ArrayBlockingQueue<BusinessChangeEvent>[] queues;
+    private final AtomicBoolean[] overflowed;
+    private final Counter publishedCounter;
+    private final Counter droppedCounter;
+
+    @SuppressWarnings("unchecked")
+    public ChangeEventQueue(
+            MeterRegistry meterRegistry,
+            ChangeLogBacklog changeLogBacklog,
+            @Value("${app.index-sync.push-enabled:true}") boolean enabled,
+            @Value("${app.index-sync.workers:4}") int partitionCount,
+            @Value("${app.index-sync.queue-capacity:10000}") int capacity) {
+        this.changeLogBacklog = changeLogBacklog;
+        this.enabled = enabled;
+        this.partitionCount = partitionCount;
+        this.queues = new ArrayBlockingQueue[partitionCount];
+        this.overflowed = new AtomicBoolean[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            queues[partition] = new ArrayBlockingQueue<>(capacity);
+            overflowed[partition] = new AtomicBoolean();
+        }
+        this.publishedCounter = Counter.builder("proximity.indexsync.push.published")
+                .description("Change events pushed to the in-process sync queue")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("proximity.indexsync.push.dropped")
+                .description("Change events dropped because the sync queue was full (left to the change_log poll)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publishes the event once the surrounding transaction (if any) has committed, so the sync
+     * worker never reads a business row older than the event. The backlog gauges learn about
+     * the event at the same point, whether or not pushing is enabled.
+     */
+    public void publish(BusinessChangeEvent event) {
+        afterCommit(() -> onCommitted(event));
+    }
+
+    /**
+     * Publishes a batch of events with a single commit callback, see {@link #publish}.
+     */
+    public void publishAll(List<BusinessChangeEvent> events) {
+        afterCommit(() -> events.forEach(this::onCommitted));
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the first event of the partition, then takes whatever
+     * else is queued, up to {@code maxEvents} in total.
+     */
+    public List<BusinessChangeEvent> take(int partition, int maxEvents, long timeoutMs) throws InterruptedException {
+        BusinessChangeEvent first = queues[partition].poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return List.of();
+        }
+        List<BusinessChangeEvent> events = new ArrayList<>();
+        events.add(first);
+        queues[partition].drainTo(events, maxEvents - 1);
+        return events;
+    }
+
+    /**
+     * Whether events of the partition were dropped since the last call.
+     */
+    public boolean clearOverflow(int partition) {
+        return overflowed[partition].getAndSet(false);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    private void onCommitted(BusinessChangeEvent event) {
+        changeLogBacklog.onAppended(event);
+        if (!enabled) {
+            return;
+        }
+        int partition = (int) Math.floorMod(event.businessId(), (long) partitionCount);
+        if (queues[partition].offer(event)) {
+            publishedCounter.increment();
+        } else {
+            overflowed[partition].set(true);
+            droppedCounter.increment();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Change-log backlog per sync partition, kept up to date from appends, polls and processed
+ * batches so the backlog gauges are plain field reads instead of change_log scans.
+ *
+ * Two watermarks are tracked: the highest event id known to be appended (all partitions),
+ * and per partition the oldest event known to be unprocessed. The oldest event comes from
+ * the first row of each catch-up poll (polls are in id order) or from a local append into
+ * a drained partition. Ids are spread over partitions by business_id, so the backlog is
+ * estimated as the id range between the two watermarks divided by the partition count.
+ * Events appended by other instances are only seen on the next catch-up poll.
+ */
+@Component
+public class ChangeLogBacklog {
+
+    private final int partitionCount;
+    private final AtomicLong appendedHighWater = new AtomicLong();
+    private final AtomicReference<Watermark>[] oldestUnprocessed;
+
+    @SuppressWarnings("unchecked")
+    public ChangeLogBacklog(
+            MeterRegistry meterRegistry,
+            @Value("${app.index-sync.workers:4}") int partitionCount) {
+        this.partitionCount = partitionCount;
+        this.oldestUnprocessed = new AtomicReference[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            int p = partition;
+            oldestUnprocessed[p] = new AtomicReference<>();
+            Gauge.builder("proximity.indexsync.backlog", () -> backlog(p))
+                    .description("Estimated number of unprocessed change events")
+                    .tag("partition", String.valueOf(p))
+                    .register(meterRegistry);
+            Gauge.builder("proximity.indexsync.oldest.age.seconds", () -> oldestAgeSeconds(p))
+                    .description("Age in seconds of the oldest unprocessed change event")
+                    .tag("partition", String.valueOf(p))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Highest appended id seen so far; take it before a poll and pass it to {@link #onPolled}.
+     */
+    public long appendedHighWater() {
+        return appendedHighWater.get();
+    }
+
+    /**
+     * Raises the appended high-water mark, e.g. from {@code MAX(id)} of change_log.
+     */
+    public void onHighWater(long eventId) {
+        appendedHighWater.accumulateAndGet(eventId, Math::max);
+    }
+
+    /**
+     * An event was committed to change_log by this instance.
+     */
+    public void onAppended(BusinessChangeEvent event) {
+        onHighWater(event.id());
+        // Only an empty partition takes the new event as its oldest; otherwise an older one is pending
+        oldestUnprocessed[partitionOf(event)].compareAndSet(null, Watermark.of(event));
+    }
+
+    /**
+     * Records the result of a catch-up poll. An empty poll means the partition had nothing
+     * pending up to {@code highWaterBeforePoll}, so only later appends are kept.
+     */
+    public void onPolled(int partition, List<BusinessChangeEvent> events, long highWaterBeforePoll) {
+        if (!events.isEmpty()) {
+            oldestUnprocessed[partition].set(Watermark.of(events.get(0)));
+            onHighWater(events.get(events.size() - 1).id());
+        } else {
+            oldestUnprocessed[partition].updateAndGet(
+                    oldest -> oldest != null && oldest.id() > highWaterBeforePoll ? oldest : null);
+        }
+    }
+
+    /**
+     * Clears the partition's low-water mark when a processed batch contains it. Pending events
+     * after the batch are picked up again by the next poll or append.
+     *
+     * A batch of newer ids says nothing about the oldest event: pushed batches skip whatever
+     * is still waiting for the catch-up poll, so the mark stays until that poll moves it.
+     */
+    public void onProcessed(int partition, List<BusinessChangeEvent> events) {
+        Watermark oldest = oldestUnprocessed[partition].get();
+        if (oldest == null) {
+            return;
+        }
+        for (BusinessChangeEvent event : events) {
+            if (event.id() == oldest.id()) {
+                oldestUnprocessed[partition].compareAndSet(oldest, null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * A full catch-up batch was processed, so more events are pending after {@code last}.
+     * Until the next poll, the oldest of them is taken to be no older than {@code last}.
+     */
+    public void onMorePending(int partition, BusinessChangeEvent last) {
+        oldestUnprocessed[partition].compareAndSet(null, new Watermark(last.id() + 1, last.createdAt()));
+    }
+
+    public long backlog(int partition) {
+        Watermark oldest = oldestUnprocessed[partition].get();
+        if (oldest == null) {
+            return 0L;
+        }
+        long idRange = Math.max(0L, appendedHighWater.get() - oldest.id());
+        return 1L + idRange / partitionCount;
+    }
+
+    public double oldestAgeSeconds(int partition) {
+        Watermark oldest = oldestUnprocessed[partition].get();
+        if (oldest == null) {
+            return 0d;
+        }
+        return Duration.between(oldest.createdAt(), Instant.now()).toSeconds();
+    }
+
+    private int partitionOf(BusinessChangeEvent event) {
+        return (int) Math.floorMod(event.businessId(), (long) partitionCount);
+    }
+
+    private record Watermark(long id, Instant createdAt) {
+
+        private static Watermark of(BusinessChangeEvent event) {
+            return new Watermark(event.id(), event.createdAt());
+        }
+    }
+}
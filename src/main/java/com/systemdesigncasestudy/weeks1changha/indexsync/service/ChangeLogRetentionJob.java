@@ -0,0 +1,141 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.ChangeLogPartition;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.ChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlChangeLogPartitionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Trims processed change_log rows older than the retention period.
+ *
+ * On a plain table it deletes in chunks of {@code chunk-size} rows with a pause in between,
+ * so each delete is a short transaction on old primary keys and never holds up appends.
+ * On a table range-partitioned by id it drops whole expired partitions instead, and keeps
+ * one empty partition of headroom ahead of the newest id.
+ */
+@Profile("mysql")
+@Component
+public class ChangeLogRetentionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLogRetentionJob.class);
+
+    private final ChangeLogRepository changeLogRepository;
+    private final MysqlChangeLogPartitionRepository partitionRepository;
+    private final boolean enabled;
+    private final Duration retention;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final long chunkPauseMs;
+    private final long partitionSize;
+    private final int lockWaitTimeoutSeconds;
+    private final Counter deletedRowsCounter;
+    private final Counter droppedPartitionsCounter;
+
+    public ChangeLogRetentionJob(
+            ChangeLogRepository changeLogRepository,
+            MysqlChangeLogPartitionRepository partitionRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.index-sync.retention.enabled:true}") boolean enabled,
+            @Value("${app.index-sync.retention.hours:72}") long retentionHours,
+            @Value("${app.index-sync.retention.chunk-size:5000}") int chunkSize,
+            @Value("${app.index-sync.retention.max-chunks-per-run:200}") int maxChunksPerRun,
+            @Value("${app.index-sync.retention.chunk-pause-ms:50}") long chunkPauseMs,
+            @Value("${app.index-sync.retention.partition-size:1000000}") long partitionSize,
+            @Value("${app.index-sync.retention.lock-wait-timeout-seconds:2}") int lockWaitTimeoutSeconds) {
+        this.changeLogRepository = changeLogRepository;
+        this.partitionRepository = partitionRepository;
+        this.enabled = enabled;
+        this.retention = Duration.ofHours(retentionHours);
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.chunkPauseMs = chunkPauseMs;
+        this.partitionSize = partitionSize;
+        this.lockWaitTimeoutSeconds = lockWaitTimeoutSeconds;
+        this.deletedRowsCounter = Counter.builder("proximity.indexsync.retention.deleted.rows")
+                .description("Processed change_log rows deleted by the retention job")
+                .register(meterRegistry);
+        this.droppedPartitionsCounter = Counter.builder("proximity.indexsync.retention.dropped.partitions")
+                .description("Expired change_log partitions dropped by the retention job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.index-sync.retention.delay-ms:600000}",
+            fixedDelayString = "${app.index-sync.retention.delay-ms:600000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(retention);
+        try {
+            List<ChangeLogPartition> partitions = partitionRepository.findPartitions();
+            if (partitions.isEmpty()) {
+                deleteInChunks(cutoff);
+            } else {
+                maintainPartitions(partitions, cutoff);
+            }
+        } catch (RuntimeException e) {
+            log.error("Change log retention run failed", e);
+        }
+    }
+
+    private void deleteInChunks(Instant cutoff) {
+        int total = 0;
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            int deleted = changeLogRepository.deleteProcessedBefore(cutoff, chunkSize);
+            deletedRowsCounter.increment(deleted);
+            total += deleted;
+            if (deleted < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(chunkPauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Deleted {} processed change_log rows created before {}", total, cutoff);
+        }
+    }
+
+    private void maintainPartitions(List<ChangeLogPartition> partitions, Instant cutoff) {
+        ChangeLogPartition maxValuePartition = null;
+        long lastBound = 0L;
+        for (ChangeLogPartition partition : partitions) {
+            if (partition.isMaxValue()) {
+                maxValuePartition = partition;
+            } else {
+                lastBound = Math.max(lastBound, partition.upperBound());
+            }
+        }
+
+        if (maxValuePartition != null && lastBound - changeLogRepository.maxId() < partitionSize) {
+            long upperBound = lastBound + partitionSize;
+            partitionRepository.addPartition(maxValuePartition, upperBound, lockWaitTimeoutSeconds);
+            log.info("Added change_log partition p{}", upperBound);
+        }
+
+        // Oldest first; the partition holding the newest bounded range is always kept
+        for (ChangeLogPartition partition : partitions) {
+            if (partition.isMaxValue() || partition.upperBound() == lastBound
+                    || !partitionRepository.isExpired(partition, cutoff)) {
+                break;
+            }
+            partitionRepository.dropPartition(partition, lockWaitTimeoutSeconds);
+            droppedPartitionsCounter.increment();
+            log.info("Dropped expired change_log partition {}", partition.name());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks this instance's transactions that append to change_log.
+ *
+ * change_log ids are assigned at insert, not at commit, so a transaction can still hold id
+ * {@code n} uncommitted while {@code n + 1} is committed and processed. Read
+ * {@code maxId()}, then {@link #mark()}, then {@link #awaitWritesBefore}: afterwards every
+ * id up to that {@code maxId()} is committed or rolled back, because any transaction that
+ * inserted before the read had begun before the mark.
+ */
+@Component
+public class ChangeLogWriteTracker {
+
+    private static final long POLL_INTERVAL_MS = 5L;
+
+    private final AtomicLong nextTicket = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    /**
+     * Call before the write transaction begins and pass the ticket to {@link #end} once it
+     * has committed or rolled back.
+     */
+    public long begin() {
+        long ticket = nextTicket.getAndIncrement();
+        inFlight.add(ticket);
+        return ticket;
+    }
+
+    public void end(long ticket) {
+        inFlight.remove(ticket);
+    }
+
+    /**
+     * Ticket of the next write to begin.
+     */
+    public long mark() {
+        return nextTicket.get();
+    }
+
+    /**
+     * Waits until every write that began before {@code mark} has ended, and returns false
+     * if some are still running after {@code timeoutMs}.
+     */
+    public boolean awaitWritesBefore(long mark, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (inFlight.lower(mark) != null) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,155 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps "mysql,geo-inmemory" to a single instance.
+ *
+ * The in-process index only sees the change_log events its own sync workers claim, and
+ * {@code processed} is shared by all instances, so a second instance would leave both
+ * indexes missing each other's writes (and the snapshot replay would never recover them).
+ * Startup takes the MySQL named lock {@value #LOCK_NAME} and fails when another instance
+ * holds it.
+ *
+ * The lock belongs to a MySQL session, so it lives on a connection of its own, opened
+ * outside the pool: a pool may close or recycle it and the lock would go with it. Every
+ * {@code check-ms} the lock is verified with {@code IS_USED_LOCK}, which also keeps the
+ * session from idling out. If the session was dropped the lock is taken again on a new
+ * connection; while no connection holds it, health is DOWN.
+ */
+@Profile("mysql & geo-inmemory")
+@Component
+public class GeoInMemorySingleInstanceLock implements HealthIndicator, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoInMemorySingleInstanceLock.class);
+    static final String LOCK_NAME = "proximity.geo-inmemory";
+    private static final int QUERY_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private Connection connection;
+    private volatile boolean held;
+    private volatile int reacquired;
+
+    public GeoInMemorySingleInstanceLock(
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password) throws SQLException {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        if (!acquire()) {
+            throw new IllegalStateException("Another instance runs the in-process geo index (MySQL lock '"
+                    + LOCK_NAME + "' is held); the geo-inmemory profile supports a single instance");
+        }
+        log.info("Acquired single-instance lock '{}' for the in-process geo index", LOCK_NAME);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.geo-index.lock.check-ms:5000}",
+            fixedDelayString = "${app.geo-index.lock.check-ms:5000}")
+    public synchronized void check() {
+        if (held && stillHeld()) {
+            return;
+        }
+        if (held) {
+            held = false;
+            log.error("Lost single-instance lock '{}' (MySQL session ended); taking it again", LOCK_NAME);
+        }
+        try {
+            if (acquire()) {
+                reacquired++;
+                // Free again, so no other instance holds it now
+                log.warn("Took single-instance lock '{}' again", LOCK_NAME);
+            } else {
+                log.error("Single-instance lock '{}' is held by another instance; the in-process geo index "
+                        + "misses its writes, stop one of them", LOCK_NAME);
+            }
+        } catch (SQLException e) {
+            log.error("Could not take single-instance lock '{}' again", LOCK_NAME, e);
+        }
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = held ? Health.up() : Health.down();
+        return health.withDetail("lock", LOCK_NAME)
+                .withDetail("reacquired", reacquired)
+                .build();
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        if (connection == null) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        } finally {
+            closeConnection();
+        }
+    }
+
+    private boolean acquire() throws SQLException {
+        closeConnection();
+        Connection lockConnection = DriverManager.getConnection(url, username, password);
+        try (PreparedStatement statement = lockConnection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                    lockConnection.close();
+                    return false;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            lockConnection.close();
+            throw e;
+        }
+        connection = lockConnection;
+        held = true;
+        return true;
+    }
+
+    /**
+     * Whether this session still holds the lock; a failed query means the session is gone.
+     */
+    private boolean stillHeld() {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT IS_USED_LOCK(?) = CONNECTION_ID()")) {
+            statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        } catch (SQLException e) {
+            log.warn("Single-instance lock check failed", e);
+            return false;
+        }
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Could not close lock connection", e);
+        }
+        connection = null;
+    }
+}
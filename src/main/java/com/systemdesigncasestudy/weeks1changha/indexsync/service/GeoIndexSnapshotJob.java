@@ -0,0 +1,191 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.ChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeoIndexRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Warm restarts for the in-process geo index.
+ *
+ * Every {@code delay-ms}, and once more on shutdown, the index is saved to a snapshot file
+ * along with a change-log id up to which every event is already in the index. On startup,
+ * before the sync workers and the bulk loader run, the snapshot is restored and only the
+ * change-log events after that id are replayed, instead of reloading every business from
+ * MySQL. A missing or unreadable snapshot, or one whose replay would need change_log rows
+ * the retention job already deleted, leaves the index empty for {@link RedisGeoDataLoader}.
+ *
+ * The id is {@code processedUpTo()}, capped at a {@code maxId()} read before waiting out
+ * every write transaction that was running at that point (see {@link ChangeLogWriteTracker}),
+ * so no event at or below it can still commit after the capture. The profile runs a single
+ * instance (see {@link GeoInMemorySingleInstanceLock}), so these are all the writers.
+ */
+@Profile("mysql & geo-inmemory")
+@Component
+public class GeoIndexSnapshotJob implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoIndexSnapshotJob.class);
+    private static final int REPLAY_BATCH_SIZE = 1000;
+
+    private final InMemoryGeoIndexRepository geoIndex;
+    private final ChangeLogRepository changeLogRepository;
+    private final IndexSyncService indexSyncService;
+    private final ChangeLogWriteTracker changeLogWrites;
+    private final boolean enabled;
+    private final Path file;
+    private final long writeWaitMs;
+    private final Duration retention;
+    private final Timer writeTimer;
+    private final Timer restoreTimer;
+    private volatile boolean running;
+
+    public GeoIndexSnapshotJob(
+            InMemoryGeoIndexRepository geoIndex,
+            ChangeLogRepository changeLogRepository,
+            IndexSyncService indexSyncService,
+            ChangeLogWriteTracker changeLogWrites,
+            MeterRegistry meterRegistry,
+            @Value("${app.geo-index.snapshot.enabled:true}") boolean enabled,
+            @Value("${app.geo-index.snapshot.path:data/geo-index.snapshot}") String path,
+            @Value("${app.geo-index.snapshot.write-wait-ms:10000}") long writeWaitMs,
+            @Value("${app.index-sync.retention.hours:72}") long retentionHours) {
+        this.geoIndex = geoIndex;
+        this.changeLogRepository = changeLogRepository;
+        this.indexSyncService = indexSyncService;
+        this.changeLogWrites = changeLogWrites;
+        this.enabled = enabled;
+        this.file = Path.of(path);
+        this.writeWaitMs = writeWaitMs;
+        this.retention = Duration.ofHours(retentionHours);
+        this.writeTimer = Timer.builder("proximity.geoindex.snapshot.duration")
+                .description("Time to save or restore the geo index snapshot, replay included")
+                .tag("operation", "write")
+                .register(meterRegistry);
+        this.restoreTimer = Timer.builder("proximity.geoindex.snapshot.duration")
+                .description("Time to save or restore the geo index snapshot, replay included")
+                .tag("operation", "restore")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled || !Files.exists(file)) {
+            return;
+        }
+        Timer.Sample sample = Timer.start();
+        long changeLogId;
+        Instant savedAt;
+        try {
+            savedAt = Files.getLastModifiedTime(file).toInstant();
+            changeLogId = geoIndex.restoreSnapshot(file);
+        } catch (IOException e) {
+            // The index stays empty and the bulk loader refills it from MySQL
+            log.warn("Could not restore geo index snapshot {}", file, e);
+            return;
+        }
+        if (!replayable(changeLogId, savedAt)) {
+            geoIndex.clear();
+            log.warn("Discarded geo index snapshot {} (change log id {}, saved {}): the change_log rows "
+                    + "after it may already be deleted", file, changeLogId, savedAt);
+            return;
+        }
+        long replayed = replayChangesAfter(changeLogId);
+        long elapsedMs = sample.stop(restoreTimer) / 1_000_000L;
+        log.info("Restored geo index snapshot {} (change log id {}) and replayed {} change events in {}ms",
+                file, changeLogId, replayed, elapsedMs);
+    }
+
+    /**
+     * Runs after the sync workers have stopped, so the last snapshot holds everything they applied.
+     */
+    @Override
+    public void stop() {
+        if (running) {
+            running = false;
+            run();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after {@link IndexSyncWorkers} (default phase).
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.geo-index.snapshot.delay-ms:300000}",
+            fixedDelayString = "${app.geo-index.snapshot.delay-ms:300000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            // maxId() before the mark: a write holding a lower id began before the mark
+            long maxId = changeLogRepository.maxId();
+            long mark = changeLogWrites.mark();
+            if (!changeLogWrites.awaitWritesBefore(mark, writeWaitMs)) {
+                log.warn("Skipped geo index snapshot: write transactions still running after {}ms", writeWaitMs);
+                return;
+            }
+            // Read before the capture: every event up to it is already in the index
+            long changeLogId = Math.min(maxId, changeLogRepository.processedUpTo());
+            geoIndex.writeSnapshot(file, changeLogId);
+            long elapsedMs = sample.stop(writeTimer) / 1_000_000L;
+            log.info("Saved geo index snapshot {} (change log id {}) in {}ms", file, changeLogId, elapsedMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not save geo index snapshot {}", file, e);
+        }
+    }
+
+    /**
+     * Whether every event after {@code changeLogId} is still in change_log. An empty log
+     * cannot tell, so then the snapshot must be younger than the retention period.
+     * A rolled-back id right after the snapshot also discards it; the bulk load is the
+     * safe side.
+     */
+    private boolean replayable(long changeLogId, Instant savedAt) {
+        long firstRetainedId = changeLogRepository.firstRetainedId();
+        if (firstRetainedId > changeLogId + 1) {
+            return false;
+        }
+        boolean empty = firstRetainedId > changeLogRepository.maxId();
+        return !empty || savedAt.isAfter(Instant.now().minus(retention));
+    }
+
+    private long replayChangesAfter(long changeLogId) {
+        long replayed = 0L;
+        long afterId = changeLogId;
+        List<BusinessChangeEvent> events;
+        while (!(events = changeLogRepository.findAfter(afterId, REPLAY_BATCH_SIZE)).isEmpty()) {
+            indexSyncService.replay(events);
+            replayed += events.size();
+            afterId = events.get(events.size() - 1).id();
+        }
+        return replayed;
+    }
+}
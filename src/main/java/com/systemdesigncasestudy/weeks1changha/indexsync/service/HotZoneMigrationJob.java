@@ -0,0 +1,211 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfigService;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.ZoneMigration;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexShard;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexShards;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MisplacedIndexRows;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlGeohashIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlHotZoneConfigRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves geohash_index rows to their new shard after a hot zone is added, removed or pointed
+ * at another shard in hot_zone_config.
+ *
+ * {@link HotZoneConfigService} records each such change as a {@link ZoneMigration} in
+ * hot_zone_migration. Each tick scans one chunk of {@code chunk-size} rows under a changed
+ * prefix in one shard, in key order, and re-applies the businesses whose row sits in the
+ * wrong shard through {@link IndexSyncService#replay}: that inserts into the new shard before
+ * deleting from the old one, under the same partition lock as the sync workers. Until the
+ * migration is complete, prefix reads also look in the shards of the replaced configuration.
+ *
+ * The cursor is saved after every chunk, compare-and-set, so a restart resumes where it
+ * stopped and instances never move it backwards; an instance that loses the race reloads it.
+ * A change is only worked on {@code settle-ms} after it was recorded, once every instance
+ * has refreshed its routing and no longer writes rows to the old shards.
+ */
+@Profile("mysql")
+@Component
+public class HotZoneMigrationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(HotZoneMigrationJob.class);
+
+    private final HotZoneConfigService hotZoneConfigService;
+    private final MysqlHotZoneConfigRepository hotZoneConfigRepository;
+    private final MysqlGeohashIndexRepository geohashIndexRepository;
+    private final List<GeohashIndexShard> shards;
+    private final IndexSyncService indexSyncService;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final Duration settle;
+    private final Counter scannedCounter;
+    private final Counter movedCounter;
+    private final AtomicLong pendingPrefixes = new AtomicLong();
+
+    private ZoneMigration migration;
+    private ZoneMigration.Cursor cursor;
+    private int shardIndex;
+    private long moved;
+    private long startedAt;
+
+    public HotZoneMigrationJob(
+            HotZoneConfigService hotZoneConfigService,
+            MysqlHotZoneConfigRepository hotZoneConfigRepository,
+            MysqlGeohashIndexRepository geohashIndexRepository,
+            GeohashIndexShards shards,
+            IndexSyncService indexSyncService,
+            MeterRegistry meterRegistry,
+            @Value("${app.index-sync.zone-migration.enabled:true}") boolean enabled,
+            @Value("${app.index-sync.zone-migration.chunk-size:1000}") int chunkSize,
+            @Value("${app.index-sync.zone-migration.settle-ms:120000}") long settleMs) {
+        this.hotZoneConfigService = hotZoneConfigService;
+        this.hotZoneConfigRepository = hotZoneConfigRepository;
+        this.geohashIndexRepository = geohashIndexRepository;
+        this.shards = List.copyOf(shards.all());
+        this.indexSyncService = indexSyncService;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.settle = Duration.ofMillis(settleMs);
+        this.scannedCounter = Counter.builder("proximity.indexsync.zone.migration.scanned")
+                .description("geohash_index rows scanned under hot zone prefixes whose shard changed")
+                .register(meterRegistry);
+        this.movedCounter = Counter.builder("proximity.indexsync.zone.migration.moved")
+                .description("Businesses moved to the geohash_index shard of their new hot zone routing")
+                .register(meterRegistry);
+        Gauge.builder("proximity.indexsync.zone.migration.pending.prefixes", pendingPrefixes, AtomicLong::get)
+                .description("Changed hot zone prefixes whose rows are not fully moved yet")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.index-sync.zone-migration.delay-ms:1000}",
+            fixedDelayString = "${app.index-sync.zone-migration.delay-ms:1000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            migrateChunk();
+        } catch (RuntimeException e) {
+            log.error("Hot zone migration failed at {} in shard {}", currentPrefix(), currentShard(), e);
+        }
+    }
+
+    private void migrateChunk() {
+        if (migration == null && !startNext()) {
+            return;
+        }
+
+        String prefix = migration.prefixes().get(cursor.prefixIndex());
+        MisplacedIndexRows chunk = geohashIndexRepository.findMisplaced(
+                currentShard(), prefix, cursor.afterGeohash(), cursor.afterBusinessId(), chunkSize);
+        scannedCounter.increment(chunk.scanned());
+        if (!chunk.businessIds().isEmpty()) {
+            List<BusinessChangeEvent> events = new ArrayList<>(chunk.businessIds().size());
+            Instant now = Instant.now();
+            for (Long businessId : chunk.businessIds()) {
+                // Not in change_log: replay only re-reads the business and never marks ids
+                events.add(new BusinessChangeEvent(0L, businessId, ChangeType.UPDATED, now));
+            }
+            indexSyncService.replay(events);
+            movedCounter.increment(events.size());
+            moved += events.size();
+        }
+
+        ZoneMigration.Cursor next;
+        if (chunk.scanned() == chunkSize) {
+            // Moved rows are gone from this shard, so the key order cursor stays valid
+            next = new ZoneMigration.Cursor(
+                    cursor.prefixIndex(), currentShard(), chunk.lastGeohash(), chunk.lastBusinessId());
+        } else if (shardIndex + 1 < shards.size()) {
+            next = new ZoneMigration.Cursor(cursor.prefixIndex(), shards.get(shardIndex + 1).name(), "", 0L);
+        } else if (cursor.prefixIndex() + 1 < migration.prefixes().size()) {
+            next = new ZoneMigration.Cursor(cursor.prefixIndex() + 1, shards.get(0).name(), "", 0L);
+        } else {
+            if (hotZoneConfigService.completeMigration(migration, cursor)) {
+                pendingPrefixes.decrementAndGet();
+                log.info("Hot zone migration for {} complete in {}ms: {} businesses moved",
+                        migration.prefixes(), System.currentTimeMillis() - startedAt, moved);
+            }
+            migration = null;
+            return;
+        }
+        if (!hotZoneConfigRepository.updateCursor(migration.id(), cursor, next)) {
+            log.info("Hot zone migration for {} was advanced by another instance, reloading", migration.prefixes());
+            migration = null;
+            return;
+        }
+        if (next.prefixIndex() != cursor.prefixIndex()) {
+            pendingPrefixes.decrementAndGet();
+        }
+        cursor = next;
+        shardIndex = indexOfShard(next.shard());
+    }
+
+    /**
+     * Picks the oldest pending migration, once it has settled, with its saved cursor.
+     */
+    private boolean startNext() {
+        List<ZoneMigration> pending = hotZoneConfigRepository.findPendingMigrations();
+        pendingPrefixes.set(pending.stream()
+                .mapToLong(next -> next.prefixes().size() - next.cursor().prefixIndex())
+                .sum());
+        if (pending.isEmpty() || pending.get(0).createdAt().isAfter(Instant.now().minus(settle))) {
+            return false;
+        }
+        ZoneMigration next = pending.get(0);
+        ZoneMigration.Cursor saved = next.cursor();
+        if (indexOfShard(saved.shard()) < 0) {
+            // The shard is gone from the configuration: scan the prefix again from the start
+            ZoneMigration.Cursor restart = new ZoneMigration.Cursor(saved.prefixIndex(), "", "", 0L);
+            if (!hotZoneConfigRepository.updateCursor(next.id(), saved, restart)) {
+                return false;
+            }
+            saved = restart;
+        }
+        migration = next;
+        cursor = saved;
+        shardIndex = indexOfShard(saved.shard());
+        moved = 0L;
+        startedAt = System.currentTimeMillis();
+        log.info("Hot zone migration {} for {} at {}",
+                saved.equals(ZoneMigration.Cursor.START) ? "started" : "resumed", migration.prefixes(), saved);
+        return true;
+    }
+
+    private int indexOfShard(String name) {
+        if (name.isEmpty()) {
+            return 0;
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String currentPrefix() {
+        return migration != null ? migration.prefixes().get(cursor.prefixIndex()) : null;
+    }
+
+    private String currentShard() {
+        return shards.get(shardIndex).name();
+    }
+}
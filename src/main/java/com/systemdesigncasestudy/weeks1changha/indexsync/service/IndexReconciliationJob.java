@@ -0,0 +1,270 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
+import com.systemdesigncasestudy.weeks1changha.business.repository.BusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoIndex;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexRows;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds and repairs drift between business and the index stores: every geohash_index shard
+ * and the geo index (Redis GeoSet or in-process).
+ *
+ * Each tick checks one chunk of {@code chunk-size} businesses in id order and moves a cursor
+ * forward, so the load on MySQL and the geo index is bounded by chunk-size per
+ * {@code delay-ms} (one range read per store and one position lookup). After the last chunk the
+ * pass is over and the next one starts {@code pass-interval-ms} later. Businesses updated
+ * within {@code grace-seconds} are skipped, since their change may still be on its way
+ * through index sync.
+ *
+ * Index entries of businesses that no longer exist are orphans. The geohash_index shards are
+ * read by id range, so their orphans come with the rows. The geo index cannot be scanned by
+ * id, so the position lookup covers every id of the chunk's id range, business or not. That
+ * range is capped at {@value #ID_RANGE_PER_CHUNK} times chunk-size ids, and the pass ends at
+ * the highest id ever allocated.
+ *
+ * A drifted business is repaired by re-applying its current state through
+ * {@link IndexSyncService#replay}, under the same partition lock as the sync workers.
+ */
+@Profile("mysql")
+@Component
+public class IndexReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexReconciliationJob.class);
+    /** GEOADD stores 52-bit geohashes, accurate to well under a meter. */
+    private static final double POSITION_TOLERANCE_DEGREES = 0.00001d;
+    private static final String GEO_INDEX_STORE = "geo_index";
+    /** Ids per chunk, as a multiple of chunk-size, when ids are sparse. */
+    private static final int ID_RANGE_PER_CHUNK = 2;
+
+    private enum Drift { MISSING, STALE, ORPHAN }
+
+    private final BusinessRepository businessRepository;
+    private final GeohashIndexRepository geohashIndexRepository;
+    private final GeoIndex geoIndex;
+    private final IndexSyncService indexSyncService;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final long passIntervalMs;
+    private final Duration grace;
+    private final boolean repair;
+    private final Counter checkedCounter;
+    private final Counter repairedCounter;
+    private final MeterRegistry meterRegistry;
+    // Keyed by store (shard name or geo_index) and drift kind
+    private final Map<String, Counter> driftCounters = new HashMap<>();
+    private final AtomicLong lastPassDrifted = new AtomicLong();
+
+    private long cursor;
+    private long passDrifted;
+    private long passStartedAt;
+    private long nextPassAt;
+
+    public IndexReconciliationJob(
+            BusinessRepository businessRepository,
+            GeohashIndexRepository geohashIndexRepository,
+            GeoIndex geoIndex,
+            IndexSyncService indexSyncService,
+            MeterRegistry meterRegistry,
+            @Value("${app.index-sync.reconcile.enabled:true}") boolean enabled,
+            @Value("${app.index-sync.reconcile.chunk-size:1000}") int chunkSize,
+            @Value("${app.index-sync.reconcile.pass-interval-ms:3600000}") long passIntervalMs,
+            @Value("${app.index-sync.reconcile.grace-seconds:60}") long graceSeconds,
+            @Value("${app.index-sync.reconcile.repair:true}") boolean repair) {
+        this.businessRepository = businessRepository;
+        this.geohashIndexRepository = geohashIndexRepository;
+        this.geoIndex = geoIndex;
+        this.indexSyncService = indexSyncService;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.passIntervalMs = passIntervalMs;
+        this.grace = Duration.ofSeconds(graceSeconds);
+        this.repair = repair;
+        this.meterRegistry = meterRegistry;
+        this.checkedCounter = Counter.builder("proximity.indexsync.reconcile.checked")
+                .description("Businesses compared against the index stores")
+                .register(meterRegistry);
+        this.repairedCounter = Counter.builder("proximity.indexsync.reconcile.repaired")
+                .description("Drifted businesses re-applied to the index stores")
+                .register(meterRegistry);
+        Gauge.builder("proximity.indexsync.reconcile.last.pass.drifted", lastPassDrifted, AtomicLong::get)
+                .description("Businesses with drift in the last complete reconciliation pass")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.index-sync.reconcile.delay-ms:1000}",
+            fixedDelayString = "${app.index-sync.reconcile.delay-ms:1000}")
+    public void run() {
+        if (!enabled || System.currentTimeMillis() < nextPassAt) {
+            return;
+        }
+        try {
+            if (cursor == 0L) {
+                passStartedAt = System.currentTimeMillis();
+                passDrifted = 0L;
+            }
+            reconcileChunk();
+        } catch (RuntimeException e) {
+            log.error("Index reconciliation failed after business id {}", cursor, e);
+        }
+    }
+
+    private void reconcileChunk() {
+        List<Business> fetched = businessRepository.findAfter(cursor, chunkSize);
+        long maxId = businessRepository.maxAllocatedId();
+        long afterId = cursor;
+        long toId = fetched.size() == chunkSize ? fetched.get(fetched.size() - 1).id() : maxId;
+        toId = Math.max(afterId, Math.min(toId, afterId + (long) ID_RANGE_PER_CHUNK * chunkSize));
+        boolean lastChunk = toId >= maxId;
+        long lastId = toId;
+        List<Business> businesses = fetched.stream().filter(business -> business.id() <= lastId).toList();
+
+        // The last chunk extends to the end of the id space to catch rows past the last business
+        GeohashIndexRows rows = geohashIndexRepository.findByBusinessIdRange(afterId, lastChunk ? Long.MAX_VALUE : toId);
+        // Every id in the range, so geo index members whose business is gone show up as well
+        List<Long> rangeIds = LongStream.rangeClosed(afterId + 1, toId).boxed().toList();
+        Map<Long, double[]> positions = positions(geoIndex.findPositions(rangeIds));
+
+        Set<Long> drifted = new TreeSet<>();
+        Map<Long, Business> byId = new HashMap<>();
+        Instant settledBefore = Instant.now().minus(grace);
+        for (Business business : businesses) {
+            byId.put(business.id(), business);
+            if (business.updatedAt().isAfter(settledBefore)) {
+                continue;
+            }
+            checkedCounter.increment();
+            if (check(business, rows, positions.get(business.id()))) {
+                drifted.add(business.id());
+            }
+        }
+        // Index entries of businesses that do not exist at all
+        rows.shards().forEach((shard, shardRows) -> collectOrphans(shard, shardRows.keySet(), byId, drifted));
+        collectOrphans(GEO_INDEX_STORE, positions.keySet(), byId, drifted);
+
+        passDrifted += drifted.size();
+        if (repair && !drifted.isEmpty()) {
+            List<BusinessChangeEvent> events = new ArrayList<>(drifted.size());
+            Instant now = Instant.now();
+            for (Long businessId : drifted) {
+                // Not in change_log: replay only re-reads the business and never marks ids
+                events.add(new BusinessChangeEvent(0L, businessId, ChangeType.UPDATED, now));
+            }
+            indexSyncService.replay(events);
+            repairedCounter.increment(events.size());
+            log.warn("Reconciliation repaired {} drifted businesses in ({}, {}]", drifted.size(), afterId, toId);
+        }
+
+        if (lastChunk) {
+            long elapsedMs = System.currentTimeMillis() - passStartedAt;
+            lastPassDrifted.set(passDrifted);
+            log.info("Reconciliation pass complete in {}ms: {} drifted businesses", elapsedMs, passDrifted);
+            cursor = 0L;
+            nextPassAt = System.currentTimeMillis() + passIntervalMs;
+        } else {
+            cursor = toId;
+        }
+    }
+
+    /**
+     * Compares one business against every store and records each drift; true if any.
+     */
+    private boolean check(Business business, GeohashIndexRows rows, double[] position) {
+        boolean drifted = false;
+
+        if (!business.isActive()) {
+            for (Map.Entry<String, Map<Long, String>> shard : rows.shards().entrySet()) {
+                drifted |= expectAbsent(shard.getKey(), shard.getValue().containsKey(business.id()));
+            }
+            drifted |= expectAbsent(GEO_INDEX_STORE, position != null);
+            return drifted;
+        }
+
+        String expectedShard = geohashIndexRepository.shardFor(business.geohash());
+        for (Map.Entry<String, Map<Long, String>> shard : rows.shards().entrySet()) {
+            if (shard.getKey().equals(expectedShard)) {
+                drifted |= expectGeohash(shard.getKey(), shard.getValue().get(business.id()), business.geohash());
+            } else {
+                drifted |= expectAbsent(shard.getKey(), shard.getValue().containsKey(business.id()));
+            }
+        }
+
+        if (position == null) {
+            record(GEO_INDEX_STORE, Drift.MISSING);
+            drifted = true;
+        } else if (Math.abs(position[0] - business.latitude()) > POSITION_TOLERANCE_DEGREES
+                || Math.abs(position[1] - business.longitude()) > POSITION_TOLERANCE_DEGREES) {
+            record(GEO_INDEX_STORE, Drift.STALE);
+            drifted = true;
+        }
+        return drifted;
+    }
+
+    private void collectOrphans(String store, Set<Long> indexedIds, Map<Long, Business> businesses, Set<Long> drifted) {
+        for (Long businessId : indexedIds) {
+            if (!businesses.containsKey(businessId)) {
+                record(store, Drift.ORPHAN);
+                drifted.add(businessId);
+            }
+        }
+    }
+
+    private boolean expectGeohash(String store, String indexed, String expected) {
+        if (indexed == null) {
+            record(store, Drift.MISSING);
+            return true;
+        }
+        if (!indexed.equals(expected)) {
+            record(store, Drift.STALE);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean expectAbsent(String store, boolean present) {
+        if (present) {
+            record(store, Drift.ORPHAN);
+        }
+        return present;
+    }
+
+    private void record(String store, Drift drift) {
+        driftCounters.computeIfAbsent(store + '/' + drift, key -> Counter.builder("proximity.indexsync.reconcile.drift")
+                        .description("Index entries found missing, stale or orphaned by reconciliation")
+                        .tag("store", store)
+                        .tag("kind", drift.name().toLowerCase())
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    private static Map<Long, double[]> positions(GeoPoints points) {
+        Map<Long, double[]> positions = new HashMap<>();
+        for (int i = 0; i < points.size(); i++) {
+            positions.put(points.ids()[i], new double[] {points.latitudes()[i], points.longitudes()[i]});
+        }
+        return positions;
+    }
+}
@@ -2,20 +2,25 @@ package com.systemdesigncasestudy.weeks1changha.indexsync.service;
 
 import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
 import com.systemdesigncasestudy.weeks1changha.business.repository.BusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.cache.GeoCellCache;
 import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
 import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.GeohashIndexEntry;
 import com.systemdesigncasestudy.weeks1changha.indexsync.repository.ChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoIndex;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
 import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexRepository;
 import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -24,20 +29,36 @@ public class IndexSyncService {
     private final ChangeLogRepository changeLogRepository;
     private final BusinessRepository businessRepository;
     private final GeohashIndexRepository geohashIndexRepository;
-    private final int batchSize;
+    private final GeoIndex geoIndex;
+    private final GeoCellCache geoCellCache;
+    private final BusinessDensityMap businessDensityMap;
+    private final ChangeLogBacklog changeLogBacklog;
+    private final int partitionCount;
+    private final ReentrantLock[] partitionLocks;
     private final Timer syncLatencyTimer;
     private final Counter processedEventCounter;
+    private final Counter coalescedEventCounter;
+    private final DistributionSummary coalescingRatioSummary;
 
     public IndexSyncService(
             ChangeLogRepository changeLogRepository,
             BusinessRepository businessRepository,
             GeohashIndexRepository geohashIndexRepository,
+            GeoIndex geoIndex,
+            GeoCellCache geoCellCache,
+            BusinessDensityMap businessDensityMap,
+            ChangeLogBacklog changeLogBacklog,
             MeterRegistry meterRegistry,
-            @Value("${app.index-sync.batch-size:500}") int batchSize) {
+            @Value("${app.index-sync.workers:4}") int partitionCount) {
         this.changeLogRepository = changeLogRepository;
         this.businessRepository = businessRepository;
         this.geohashIndexRepository = geohashIndexRepository;
-        this.batchSize = batchSize;
+        this.geoIndex = geoIndex;
+        this.geoCellCache = geoCellCache;
+        this.businessDensityMap = businessDensityMap;
+        this.changeLogBacklog = changeLogBacklog;
+        this.partitionCount = partitionCount;
+        this.partitionLocks = new ReentrantLock[partitionCount];
         this.syncLatencyTimer = Timer.builder("proximity.indexsync.latency")
                 .description("Latency for one index-sync batch run")
                 .publishPercentileHistogram()
@@ -45,34 +66,107 @@ public class IndexSyncService {
         this.processedEventCounter = Counter.builder("proximity.indexsync.processed.events")
                 .description("Number of processed change events")
                 .register(meterRegistry);
-        Gauge.builder("proximity.indexsync.backlog", changeLogRepository, ChangeLogRepository::countUnprocessed)
-                .description("Number of unprocessed change events")
+        this.coalescedEventCounter = Counter.builder("proximity.indexsync.coalesced.events")
+                .description("Change events superseded by a later event for the same business in the same batch")
                 .register(meterRegistry);
-        Gauge.builder("proximity.indexsync.oldest.age.seconds", this::oldestUnprocessedAgeSeconds)
-                .description("Age in seconds of the oldest unprocessed change event")
+        this.coalescingRatioSummary = DistributionSummary.builder("proximity.indexsync.coalescing.ratio")
+                .description("Polled change events per applied index change, per batch")
                 .register(meterRegistry);
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionLocks[partition] = new ReentrantLock();
+        }
     }
 
-    @Scheduled(fixedDelayString = "${app.index-sync.delay-ms:30000}")
-    public void scheduledSync() {
-        syncOnce(batchSize);
+    public int partitionCount() {
+        return partitionCount;
     }
 
+    /**
+     * Syncs up to {@code maxEvents} events of every partition, one partition after another.
+     */
     public int syncOnce(int maxEvents) {
-        Timer.Sample sample = Timer.start();
+        int processed = 0;
+        for (int partition = 0; partition < partitionCount; partition++) {
+            processed += syncPartition(partition, maxEvents);
+        }
+        return processed;
+    }
+
+    /**
+     * Polls, applies and marks one batch of a single partition. Events are partitioned by
+     * business_id, so each business is only ever synced by one partition, in event order.
+     */
+    public int syncPartition(int partition, int maxEvents) {
+        ReentrantLock lock = partitionLocks[partition];
+        lock.lock();
         try {
-            List<BusinessChangeEvent> events = changeLogRepository.pollUnprocessed(maxEvents);
-            if (events.isEmpty()) {
-                return 0;
+            changeLogBacklog.onHighWater(changeLogRepository.maxId());
+            long highWaterBeforePoll = changeLogBacklog.appendedHighWater();
+            List<BusinessChangeEvent> events = changeLogRepository.pollUnprocessed(maxEvents, partition, partitionCount);
+            changeLogBacklog.onPolled(partition, events, highWaterBeforePoll);
+            int processed = process(partition, events);
+            if (processed >= maxEvents) {
+                changeLogBacklog.onMorePending(partition, events.get(events.size() - 1));
+            }
+            return processed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies events pushed through {@link ChangeEventQueue} right away. They are already
+     * in change_log, so they are marked processed there as well.
+     */
+    public int applyPushed(int partition, List<BusinessChangeEvent> events) {
+        ReentrantLock lock = partitionLocks[partition];
+        lock.lock();
+        try {
+            return process(partition, events);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Re-applies events on top of a rebuilt or restored index without marking anything.
+     * Each partition's share runs under that partition's lock, so a replay cannot overwrite
+     * a newer state written by its sync worker.
+     */
+    public void replay(List<BusinessChangeEvent> events) {
+        Map<Integer, List<BusinessChangeEvent>> byPartition = new HashMap<>();
+        for (BusinessChangeEvent event : events) {
+            int partition = (int) Math.floorMod(event.businessId(), (long) partitionCount);
+            byPartition.computeIfAbsent(partition, key -> new ArrayList<>()).add(event);
+        }
+        byPartition.forEach((partition, partitionEvents) -> {
+            ReentrantLock lock = partitionLocks[partition];
+            lock.lock();
+            try {
+                applyBatch(coalesce(partitionEvents));
+            } finally {
+                lock.unlock();
             }
+        });
+    }
+
+    private int process(int partition, List<BusinessChangeEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            List<BusinessChangeEvent> latest = coalesce(events);
+            coalescedEventCounter.increment(events.size() - latest.size());
+            coalescingRatioSummary.record((double) events.size() / latest.size());
+            applyBatch(latest);
 
-            List<Long> processedIds = new ArrayList<>();
+            List<Long> processedIds = new ArrayList<>(events.size());
             for (BusinessChangeEvent event : events) {
-                applyEvent(event);
                 processedIds.add(event.id());
             }
-
             changeLogRepository.markProcessed(processedIds);
+            changeLogBacklog.onProcessed(partition, events);
             processedEventCounter.increment(processedIds.size());
             return processedIds.size();
         } finally {
@@ -80,29 +174,64 @@ public class IndexSyncService {
         }
     }
 
-    private double oldestUnprocessedAgeSeconds() {
-        Instant oldest = changeLogRepository.oldestUnprocessedCreatedAt().orElse(null);
-        if (oldest == null) {
-            return 0d;
+    /**
+     * Keeps only the last event per business: every event triggers a re-read of the business
+     * row, so earlier events for the same business in the batch would write stale states that
+     * the last one overwrites anyway. All polled ids are still marked processed by the caller.
+     */
+    private static List<BusinessChangeEvent> coalesce(List<BusinessChangeEvent> events) {
+        Map<Long, BusinessChangeEvent> latest = new LinkedHashMap<>();
+        for (BusinessChangeEvent event : events) {
+            latest.put(event.businessId(), event);
         }
-        return Duration.between(oldest, Instant.now()).toSeconds();
+        return new ArrayList<>(latest.values());
     }
 
-    private void applyEvent(BusinessChangeEvent event) {
-        if (event.changeType() == ChangeType.DELETED) {
-            geohashIndexRepository.deleteByBusinessId(event.businessId());
-            return;
+    /**
+     * Applies coalesced events (one per business) with one business lookup, grouped multi-row
+     * MySQL writes and one geo index round trip, instead of several round trips per event.
+     */
+    private void applyBatch(List<BusinessChangeEvent> events) {
+        List<Long> businessIds = events.stream().map(BusinessChangeEvent::businessId).toList();
+
+        // Cells holding the previously indexed positions go stale with any change
+        GeoPoints previous = geoIndex.findPositions(businessIds);
+
+        Map<Long, Business> businesses = new HashMap<>();
+        List<Long> lookupIds = events.stream()
+                .filter(event -> event.changeType() != ChangeType.DELETED)
+                .map(BusinessChangeEvent::businessId)
+                .toList();
+        for (Business business : businessRepository.findAllByIds(lookupIds)) {
+            businesses.put(business.id(), business);
         }
 
-        Business business = businessRepository.findById(event.businessId()).orElse(null);
-        if (business == null || !business.isActive()) {
-            geohashIndexRepository.deleteByBusinessId(event.businessId());
-            return;
+        List<GeohashIndexEntry> upserts = new ArrayList<>();
+        List<Long> removals = new ArrayList<>();
+        for (BusinessChangeEvent event : events) {
+            Business business = businesses.get(event.businessId());
+            if (business == null || !business.isActive()) {
+                removals.add(event.businessId());
+            } else {
+                upserts.add(new GeohashIndexEntry(
+                        business.geohash(), business.id(),
+                        business.latitude(), business.longitude()));
+            }
         }
 
-        // Use coordinate-aware upsert to sync both MySQL and Redis
-        geohashIndexRepository.upsertWithCoordinates(
-                business.geohash(), business.id(),
-                business.latitude(), business.longitude());
+        geohashIndexRepository.applyBatch(upserts, removals);
+
+        GeoPoints.Builder indexed = new GeoPoints.Builder(upserts.size());
+        for (GeohashIndexEntry upsert : upserts) {
+            indexed.add(upsert.businessId(), upsert.latitude(), upsert.longitude());
+        }
+        businessDensityMap.onIndexed(previous, indexed.build());
+
+        for (int i = 0; i < previous.size(); i++) {
+            geoCellCache.evictAt(previous.latitudes()[i], previous.longitudes()[i]);
+        }
+        for (GeohashIndexEntry upsert : upserts) {
+            geoCellCache.evictAt(upsert.latitude(), upsert.longitude());
+        }
     }
 }
@@ -0,0 +1,107 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * One sync worker thread per change-log partition.
+ *
+ * A worker applies events pushed through {@link ChangeEventQueue} as soon as they arrive.
+ * Every {@code delay-ms}, or right away when its queue overflowed, it also runs a catch-up
+ * poll of change_log for events that never reached the queue (other instances, dropped
+ * pushes, restarts), and keeps polling while batches come back full.
+ */
+@Component
+public class IndexSyncWorkers implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexSyncWorkers.class);
+
+    private final IndexSyncService indexSyncService;
+    private final ChangeEventQueue changeEventQueue;
+    private final int batchSize;
+    private final long delayMs;
+    private volatile ExecutorService executor;
+
+    public IndexSyncWorkers(
+            IndexSyncService indexSyncService,
+            ChangeEventQueue changeEventQueue,
+            @Value("${app.index-sync.batch-size:500}") int batchSize,
+            @Value("${app.index-sync.delay-ms:30000}") long delayMs) {
+        this.indexSyncService = indexSyncService;
+        this.changeEventQueue = changeEventQueue;
+        this.batchSize = batchSize;
+        this.delayMs = delayMs;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        int partitions = indexSyncService.partitionCount();
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "index-sync-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int partition = 0; partition < partitions; partition++) {
+            int p = partition;
+            executor.submit(() -> run(p));
+        }
+        log.info("Started {} index-sync workers", partitions);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    private void run(int partition) {
+        long nextCatchUpAt = 0L;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                long waitMs = Math.max(0L, nextCatchUpAt - System.currentTimeMillis());
+                List<BusinessChangeEvent> pushed = changeEventQueue.take(partition, batchSize, waitMs);
+                if (!pushed.isEmpty()) {
+                    // On failure these stay unprocessed in change_log and the catch-up poll retries them
+                    indexSyncService.applyPushed(partition, pushed);
+                }
+
+                if (changeEventQueue.clearOverflow(partition) || System.currentTimeMillis() >= nextCatchUpAt) {
+                    nextCatchUpAt = System.currentTimeMillis() + delayMs;
+                    while (indexSyncService.syncPartition(partition, batchSize) >= batchSize) {
+                        // Full batch: more events are likely waiting
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Index sync failed for partition {}", partition, e);
+            }
+        }
+    }
+}
@@ -1,60 +1,204 @@
 package com.systemdesigncasestudy.weeks1changha.indexsync.service;
 
-import com.systemdesigncasestudy.weeks1changha.indexsync.repository.RedisGeoIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.ChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoBulkLoad;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoIndex;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 /**
- * One-time bulk loader: reads all businesses from MySQL and populates Redis
- * GeoSet.
- * Runs at startup only when the Redis geo key is empty.
+ * One-time bulk loader: reads all businesses from MySQL and populates the geo
+ * index (Redis GeoSet, or the in-process index under "geo-inmemory").
+ * Runs at startup when the index is empty, or when an earlier load was interrupted.
+ *
+ * The business id range is split into {@code threads} slices, each read in id-ordered pages
+ * by its own thread and written with pipelined multi-member GEOADDs into the bulk load's
+ * staging key. After every page the slice's last id is checkpointed, so a restart resumes
+ * where the load stopped. Once all slices are done the staging key replaces the live one,
+ * and change-log events written since the load started are replayed on top.
  */
 @Profile("mysql")
 @Component
 public class RedisGeoDataLoader implements CommandLineRunner {
 
     private static final Logger log = LoggerFactory.getLogger(RedisGeoDataLoader.class);
+    private static final String CHECKPOINT_CHANGE_LOG_ID = "change-log-id";
+    private static final String CHECKPOINT_MAX_ID = "max-id";
+    private static final String CHECKPOINT_SLICES = "slices";
+    private static final String CHECKPOINT_SLICE_PREFIX = "slice.";
+    private static final int REPLAY_BATCH_SIZE = 1000;
 
     private final JdbcTemplate primaryJdbcTemplate;
-    private final RedisGeoIndexRepository redisGeoIndexRepository;
+    private final GeoIndex geoIndex;
+    private final ChangeLogRepository changeLogRepository;
+    private final IndexSyncService indexSyncService;
+    private final int threads;
+    private final int pageSize;
+    private final Counter loadedCounter;
+    private final Timer loadTimer;
+    private final AtomicLong remainingIds = new AtomicLong();
 
     public RedisGeoDataLoader(
             @Qualifier("primaryJdbcTemplate") JdbcTemplate primaryJdbcTemplate,
-            RedisGeoIndexRepository redisGeoIndexRepository) {
+            GeoIndex geoIndex,
+            ChangeLogRepository changeLogRepository,
+            IndexSyncService indexSyncService,
+            MeterRegistry meterRegistry,
+            @Value("${app.geo-load.threads:4}") int threads,
+            @Value("${app.geo-load.page-size:5000}") int pageSize) {
         this.primaryJdbcTemplate = primaryJdbcTemplate;
-        this.redisGeoIndexRepository = redisGeoIndexRepository;
+        this.geoIndex = geoIndex;
+        this.changeLogRepository = changeLogRepository;
+        this.indexSyncService = indexSyncService;
+        this.threads = threads;
+        this.pageSize = pageSize;
+        this.loadedCounter = Counter.builder("proximity.geoload.loaded")
+                .description("Businesses written to the geo index by the bulk loader")
+                .register(meterRegistry);
+        this.loadTimer = Timer.builder("proximity.geoload.duration")
+                .description("Duration of a geo index bulk load, replay included")
+                .register(meterRegistry);
+        Gauge.builder("proximity.geoload.remaining.ids", remainingIds, AtomicLong::get)
+                .description("Business id range the bulk loader still has to read")
+                .register(meterRegistry);
     }
 
     @Override
-    public void run(String... args) {
-        if (redisGeoIndexRepository.hasData()) {
-            log.info("Redis geo:businesses already has data. Skipping bulk load.");
+    public void run(String... args) throws Exception {
+        GeoBulkLoad load = geoIndex.startBulkLoad();
+        Map<String, String> checkpoint = load.checkpoint();
+        boolean resuming = !checkpoint.isEmpty();
+        if (!resuming && geoIndex.hasData()) {
+            log.info("Geo index already has data. Skipping bulk load.");
             return;
         }
 
-        log.info("Redis geo:businesses is empty. Starting bulk load from MySQL...");
-        long start = System.currentTimeMillis();
+        long changeLogId;
+        long maxId;
+        int slices;
+        if (resuming) {
+            changeLogId = Long.parseLong(checkpoint.get(CHECKPOINT_CHANGE_LOG_ID));
+            maxId = Long.parseLong(checkpoint.get(CHECKPOINT_MAX_ID));
+            slices = Integer.parseInt(checkpoint.get(CHECKPOINT_SLICES));
+            log.info("Resuming interrupted geo index bulk load up to business id {}", maxId);
+        } else {
+            // Taken before reading: anything written from here on is replayed at the end
+            changeLogId = changeLogRepository.maxId();
+            Long max = primaryJdbcTemplate.queryForObject("SELECT MAX(id) FROM business", Long.class);
+            maxId = max == null ? 0L : max;
+            slices = threads;
+            load.saveCheckpoint(CHECKPOINT_CHANGE_LOG_ID, String.valueOf(changeLogId));
+            load.saveCheckpoint(CHECKPOINT_MAX_ID, String.valueOf(maxId));
+            load.saveCheckpoint(CHECKPOINT_SLICES, String.valueOf(slices));
+            log.info("Geo index is empty. Starting bulk load from MySQL with {} readers...", slices);
+        }
 
-        String sql = "SELECT id, latitude, longitude FROM business WHERE status = 'ACTIVE'";
-        int[] count = { 0 };
+        long start = System.nanoTime();
+        Timer.Sample sample = Timer.start();
+        long loaded = loadSlices(load, checkpoint, maxId, slices);
+        load.commit();
+        long replayed = replayChangesAfter(changeLogId);
+        sample.stop(loadTimer);
 
-        primaryJdbcTemplate.query(sql, rs -> {
-            long id = rs.getLong("id");
-            double lat = rs.getDouble("latitude");
-            double lon = rs.getDouble("longitude");
-            redisGeoIndexRepository.add(id, lat, lon);
-            count[0]++;
-            if (count[0] % 10000 == 0) {
-                log.info("Loaded {} businesses into Redis...", count[0]);
-            }
+        long elapsedMs = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+        log.info("Bulk load complete: {} businesses loaded into geo index in {}ms ({} per second), {} change events replayed",
+                loaded, elapsedMs, loaded * 1000L / elapsedMs, replayed);
+    }
+
+    private long loadSlices(GeoBulkLoad load, Map<String, String> checkpoint, long maxId, int slices)
+            throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(slices, runnable -> {
+            Thread thread = new Thread(runnable, "geo-load");
+            thread.setDaemon(true);
+            return thread;
         });
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            remainingIds.set(0L);
+            for (int slice = 0; slice < slices; slice++) {
+                // Slice covers ids in (lower, upper]
+                long lower = maxId * slice / slices;
+                long upper = maxId * (slice + 1) / slices;
+                String field = CHECKPOINT_SLICE_PREFIX + slice;
+                long resumeAfter = checkpoint.containsKey(field) ? Long.parseLong(checkpoint.get(field)) : lower;
+                remainingIds.addAndGet(upper - resumeAfter);
+                futures.add(executor.submit(() -> loadSlice(load, field, resumeAfter, upper)));
+            }
+            long loaded = 0L;
+            for (Future<Long> future : futures) {
+                loaded += future.get();
+            }
+            return loaded;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long loadSlice(GeoBulkLoad load, String checkpointField, long afterId, long upperId) {
+        long loaded = 0L;
+        long lastId = afterId;
+        while (lastId < upperId) {
+            GeoPoints.Builder page = new GeoPoints.Builder(pageSize);
+            long[] pageLastId = { lastId };
+            primaryJdbcTemplate.query(
+                """
+                    SELECT id, latitude, longitude
+                    FROM business
+                    WHERE id > ? AND id <= ? AND status = 'ACTIVE'
+                    ORDER BY id
+                    LIMIT ?
+                """,
+                rs -> {
+                    long id = rs.getLong("id");
+                    page.add(id, rs.getDouble("latitude"), rs.getDouble("longitude"));
+                    pageLastId[0] = id;
+                },
+                lastId, upperId, pageSize
+            );
+            GeoPoints points = page.build();
+            load.addAll(points);
+            // A short page means the slice is exhausted, even if its last ids are not ACTIVE
+            long reached = points.size() < pageSize ? upperId : pageLastId[0];
+            load.saveCheckpoint(checkpointField, String.valueOf(reached));
+
+            loaded += points.size();
+            loadedCounter.increment(points.size());
+            remainingIds.addAndGet(lastId - reached);
+            lastId = reached;
+        }
+        log.info("Geo load slice up to business id {} done: {} businesses", upperId, loaded);
+        return loaded;
+    }
 
-        long elapsed = System.currentTimeMillis() - start;
-        log.info("Bulk load complete: {} businesses loaded into Redis in {}ms", count[0], elapsed);
+    private long replayChangesAfter(long changeLogId) {
+        long replayed = 0L;
+        long afterId = changeLogId;
+        List<BusinessChangeEvent> events;
+        while (!(events = changeLogRepository.findAfter(afterId, REPLAY_BATCH_SIZE)).isEmpty()) {
+            indexSyncService.replay(events);
+            replayed += events.size();
+            afterId = events.get(events.size() - 1).id();
+        }
+        return replayed;
     }
 }
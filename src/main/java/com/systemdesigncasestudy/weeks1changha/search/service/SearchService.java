@@ -2,10 +2,19 @@ package com.systemdesigncasestudy.weeks1changha.search.service;
 
 import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
 import com.systemdesigncasestudy.weeks1changha.business.service.BusinessService;
+import com.systemdesigncasestudy.weeks1changha.cache.GeoCellCache;
+import com.systemdesigncasestudy.weeks1changha.cache.SearchSnapshotCache;
 import com.systemdesigncasestudy.weeks1changha.geo.GeoDistance;
-import com.systemdesigncasestudy.weeks1changha.indexsync.repository.RedisGeoIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfig;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfigService;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoHits;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoIndex;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.BusinessDensityMap;
 import com.systemdesigncasestudy.weeks1changha.search.dto.NearbyBusinessItem;
 import com.systemdesigncasestudy.weeks1changha.search.dto.NearbySearchResponse;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -15,6 +24,7 @@ import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -22,35 +32,80 @@ import org.springframework.stereotype.Service;
 public class SearchService {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SearchService.class);
+    /** Width of hot_zone_config.geohash_prefix, so a prefix of any allowed length can match. */
+    private static final int HOT_ZONE_GEOHASH_PRECISION = 10;
+    /** Density-adapted radii are rounded down to this step, so small density moves keep the radius. */
+    private static final int RADIUS_STEP_METERS = 10;
 
-    private final RedisGeoIndexRepository redisGeoIndexRepository;
+    private final GeoIndex geoIndex;
     private final BusinessService businessService;
+    private final SearchSnapshotCache searchSnapshotCache;
+    private final GeoCellCache geoCellCache;
+    private final HotZoneConfigService hotZoneConfigService;
+    private final BusinessDensityMap businessDensityMap;
+    private final MeterRegistry meterRegistry;
     private final int defaultLimit;
     private final int maxLimit;
+    private final int maxCandidates;
+    private final boolean cellCacheEnabled;
+    private final int candidateBudget;
+    private final int minRadius;
     private final Timer searchLatencyTimer;
     private final DistributionSummary candidateCountSummary;
     private final DistributionSummary resultCountSummary;
+    private final Counter cellCacheHitCounter;
+    private final Counter cellCacheMissCounter;
+    private final Counter densityShrunkCounter;
+    private final Map<String, ZoneMeters> zoneMeters = new ConcurrentHashMap<>();
 
     public SearchService(
-            RedisGeoIndexRepository redisGeoIndexRepository,
+            GeoIndex geoIndex,
             BusinessService businessService,
+            SearchSnapshotCache searchSnapshotCache,
+            GeoCellCache geoCellCache,
+            HotZoneConfigService hotZoneConfigService,
+            BusinessDensityMap businessDensityMap,
             MeterRegistry meterRegistry,
             @Value("${app.search.default-limit:20}") int defaultLimit,
-            @Value("${app.search.max-limit:100}") int maxLimit) {
-        this.redisGeoIndexRepository = redisGeoIndexRepository;
+            @Value("${app.search.max-limit:100}") int maxLimit,
+            @Value("${app.search.max-candidates:5000}") int maxCandidates,
+            @Value("${app.search.cell-cache-enabled:true}") boolean cellCacheEnabled,
+            @Value("${app.search.candidate-budget:2000}") int candidateBudget,
+            @Value("${app.search.min-radius:100}") int minRadius) {
+        this.geoIndex = geoIndex;
         this.businessService = businessService;
+        this.searchSnapshotCache = searchSnapshotCache;
+        this.geoCellCache = geoCellCache;
+        this.hotZoneConfigService = hotZoneConfigService;
+        this.businessDensityMap = businessDensityMap;
+        this.meterRegistry = meterRegistry;
         this.defaultLimit = defaultLimit;
         this.maxLimit = maxLimit;
+        this.maxCandidates = maxCandidates;
+        this.cellCacheEnabled = cellCacheEnabled;
+        this.candidateBudget = candidateBudget;
+        this.minRadius = minRadius;
         this.searchLatencyTimer = Timer.builder("proximity.search.latency")
                 .description("Latency for nearby search requests")
                 .publishPercentileHistogram()
                 .register(meterRegistry);
         this.candidateCountSummary = DistributionSummary.builder("proximity.search.candidate.count")
-                .description("Number of candidate business IDs from Redis GEOSEARCH")
+                .description("Number of candidate business IDs from the geo index")
                 .register(meterRegistry);
         this.resultCountSummary = DistributionSummary.builder("proximity.search.result.count")
                 .description("Number of businesses returned after filtering")
                 .register(meterRegistry);
+        this.cellCacheHitCounter = Counter.builder("proximity.search.cell.cache")
+                .description("Geohash cell lookups served from the cell cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cellCacheMissCounter = Counter.builder("proximity.search.cell.cache")
+                .description("Geohash cell lookups loaded from the geo index")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.densityShrunkCounter = Counter.builder("proximity.search.radius.shrunk")
+                .description("Searches whose radius was shrunk to keep the expected candidates within budget")
+                .register(meterRegistry);
     }
 
     public NearbySearchResponse searchNearby(
@@ -63,58 +118,261 @@ public class SearchService {
         Timer.Sample sample = Timer.start();
         try {
             int resolvedLimit = resolveLimit(limit);
-            int offset = decodeCursor(cursor);
-
-            // Redis GEOSEARCH: returns IDs sorted by distance ascending
-            List<Long> sortedCandidateIds = redisGeoIndexRepository.findByRadius(
-                    latitude, longitude, radius);
+            HotZoneConfig zone = hotZoneConfigService
+                    .findConfig(GeohashUtils.encode(latitude, longitude, HOT_ZONE_GEOHASH_PRECISION))
+                    .orElse(null);
+            int zoneRadius = capRadius(zone, radius);
+            // Later pages keep the radius of the first page, whatever the density does meanwhile
+            SearchCursor after = decodeCursor(cursor, latitude, longitude, radius);
+            int searchRadius = after != null ? after.radius() : densityRadius(latitude, longitude, zoneRadius);
+            String fingerprint = fingerprint(latitude, longitude, radius, searchRadius);
 
-            log.debug("Redis GEOSEARCH returned {} candidates", sortedCandidateIds.size());
-            candidateCountSummary.record(sortedCandidateIds.size());
-
-            int total = sortedCandidateIds.size();
-            resultCountSummary.record(total);
+            CandidatePage page = after == null
+                    ? firstPage(latitude, longitude, searchRadius, resolvedLimit)
+                    : pageAfter(latitude, longitude, searchRadius, fingerprint, after, resolvedLimit);
+            resultCountSummary.record(page.total());
+            if (zone != null) {
+                ZoneMeters meters = zoneMeters(zone);
+                meters.candidates().record(page.total());
+                if (zoneRadius < radius) {
+                    meters.capped().increment();
+                }
+            }
 
-            if (total == 0 || offset >= total) {
-                return new NearbySearchResponse(total, radius, null, List.of());
+            if (page.start() >= page.end()) {
+                return new NearbySearchResponse(page.total(), searchRadius, null, List.of());
             }
 
             // Only fetch business details for the current page (not all candidates)
-            int end = Math.min(offset + resolvedLimit, total);
-            List<Long> pageIds = sortedCandidateIds.subList(offset, end);
+            List<Long> pageIds = page.hits().idsBetween(page.start(), page.end());
 
             List<Business> businesses = businessService.findAllActiveByIds(pageIds);
 
-            // Build response maintaining Redis distance order
+            // Build response maintaining geo index distance order
             Map<Long, Business> businessMap = new HashMap<>();
             for (Business b : businesses) {
                 businessMap.put(b.id(), b);
             }
 
-            List<NearbyBusinessItem> items = new ArrayList<>();
-            for (Long id : pageIds) {
-                Business business = businessMap.get(id);
+            // Distances come from the geo index, computed against the indexed position
+            GeoHits hits = page.hits();
+            List<NearbyBusinessItem> items = new ArrayList<>(pageIds.size());
+            for (int i = page.start(); i < page.end(); i++) {
+                Business business = businessMap.get(hits.id(i));
                 if (business == null)
                     continue;
-                double distance = GeoDistance.haversineMeters(
-                        latitude, longitude,
-                        business.latitude(), business.longitude());
                 items.add(new NearbyBusinessItem(
                         business.id(),
                         business.name(),
                         business.category(),
-                        Math.round(distance),
+                        Math.round(hits.distance(i)),
                         business.latitude(),
                         business.longitude()));
             }
 
-            String nextCursor = end < total ? encodeCursor(end) : null;
-            return new NearbySearchResponse(total, radius, nextCursor, items);
+            String nextCursor = null;
+            if (page.hasNext()) {
+                int last = page.end() - 1;
+                nextCursor = encodeCursor(new SearchCursor(
+                        fingerprint, searchRadius, page.end(), page.hits().distance(last), page.hits().id(last)));
+            }
+            return new NearbySearchResponse(page.total(), searchRadius, nextCursor, items);
         } finally {
             sample.stop(searchLatencyTimer);
         }
     }
 
+    /**
+     * Dense hot zones are searched no wider than their {@code radius_limit}: in Gangnam a
+     * 1km circle holds about four times the candidates of a 500m one. A limit of 0 means no cap.
+     */
+    private static int capRadius(HotZoneConfig zone, int radius) {
+        if (zone == null || zone.radiusLimit() <= 0) {
+            return radius;
+        }
+        return Math.min(radius, zone.radiusLimit());
+    }
+
+    /**
+     * Largest radius (at most {@code radius}) whose expected candidate count, from the live
+     * business density around the center, fits {@code candidate-budget}; never below
+     * {@code min-radius}. Catches dense areas that have no hot_zone_config row.
+     */
+    private int densityRadius(double latitude, double longitude, int radius) {
+        if (candidateBudget <= 0 || radius <= minRadius) {
+            return radius;
+        }
+        double density = businessDensityMap.densityAround(latitude, longitude);
+        if (density <= 0d) {
+            return radius;
+        }
+        double budgetRadius = Math.sqrt(candidateBudget / (Math.PI * density));
+        if (budgetRadius >= radius) {
+            return radius;
+        }
+        densityShrunkCounter.increment();
+        int stepped = (int) (budgetRadius / RADIUS_STEP_METERS) * RADIUS_STEP_METERS;
+        return Math.max(minRadius, stepped);
+    }
+
+    private ZoneMeters zoneMeters(HotZoneConfig zone) {
+        return zoneMeters.computeIfAbsent(zone.geohashPrefix(), prefix -> new ZoneMeters(
+                Counter.builder("proximity.search.hotzone.capped")
+                        .description("Searches in a hot zone whose radius was capped to the zone limit")
+                        .tag("zone", prefix)
+                        .register(meterRegistry),
+                DistributionSummary.builder("proximity.search.hotzone.candidate.count")
+                        .description("Candidates within the (capped) radius of searches in a hot zone")
+                        .tag("zone", prefix)
+                        .register(meterRegistry)));
+    }
+
+    /**
+     * First page: only the candidates of this page are fetched, plus one to detect a next page.
+     */
+    private CandidatePage firstPage(double latitude, double longitude, int radius, int resolvedLimit) {
+        int pageEnd = Math.min(resolvedLimit, maxCandidates);
+        GeoHits.Builder cached = candidatesFromCells(latitude, longitude, radius);
+        if (cached != null) {
+            GeoHits hits = cached.build(pageEnd + 1);
+            boolean hasNext = cached.size() > pageEnd && pageEnd < maxCandidates;
+            return new CandidatePage(hits, 0, Math.min(pageEnd, hits.size()), hasNext, cached.size());
+        }
+
+        GeoHits hits = geoIndex.findByRadius(latitude, longitude, radius, pageEnd + 1);
+        log.debug("Geo index returned {} candidates", hits.size());
+        candidateCountSummary.record(hits.size());
+
+        int total = resolveTotal(latitude, longitude, radius, hits.size(), pageEnd);
+        boolean hasNext = hits.size() > pageEnd && pageEnd < maxCandidates;
+        return new CandidatePage(hits, 0, Math.min(pageEnd, hits.size()), hasNext, total);
+    }
+
+    /**
+     * Later pages resume right after the cursor anchor inside a cached candidate snapshot,
+     * so the cost of page N does not grow with N.
+     */
+    private CandidatePage pageAfter(
+            double latitude,
+            double longitude,
+            int radius,
+            String fingerprint,
+            SearchCursor after,
+            int resolvedLimit) {
+        SearchSnapshotCache.Snapshot snapshot = searchSnapshotCache.get(fingerprint)
+                .orElseGet(() -> loadSnapshot(latitude, longitude, radius, fingerprint));
+        GeoHits hits = snapshot.hits();
+
+        int start = resumePosition(hits, after);
+        int end = Math.min(start + resolvedLimit, hits.size());
+        return new CandidatePage(hits, start, end, end < hits.size(), snapshot.total());
+    }
+
+    private SearchSnapshotCache.Snapshot loadSnapshot(double latitude, double longitude, int radius, String fingerprint) {
+        GeoHits hits;
+        int total;
+        GeoHits.Builder cached = candidatesFromCells(latitude, longitude, radius);
+        if (cached != null) {
+            hits = cached.build(maxCandidates);
+            total = cached.size();
+        } else {
+            hits = geoIndex.findByRadius(latitude, longitude, radius, maxCandidates);
+            log.debug("Geo index returned {} candidates for snapshot", hits.size());
+            candidateCountSummary.record(hits.size());
+            total = resolveTotal(latitude, longitude, radius, hits.size(), maxCandidates - 1);
+        }
+
+        SearchSnapshotCache.Snapshot snapshot = new SearchSnapshotCache.Snapshot(hits, total);
+        searchSnapshotCache.put(fingerprint, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Collects every business within the radius from the cached cells covering the circle,
+     * loading missing cells from the geo index. Returns null when the radius is too large for
+     * cell caching or a cell is too dense to cache, in which case the caller queries the index.
+     */
+    private GeoHits.Builder candidatesFromCells(double latitude, double longitude, int radius) {
+        if (!cellCacheEnabled) {
+            return null;
+        }
+        int precision = geoCellCache.precisionFor(latitude, longitude, radius);
+        if (precision == 0) {
+            return null;
+        }
+
+        double latDelta = radius / 111_320d;
+        double lonDelta = latDelta / Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+        GeoHits.Builder matches = new GeoHits.Builder();
+        for (String cell : GeohashUtils.cellsCoveringCircle(latitude, longitude, radius, precision)) {
+            GeoPoints points = loadCell(cell);
+            if (points == GeoCellCache.OVERSIZED) {
+                return null;
+            }
+            for (int i = 0; i < points.size(); i++) {
+                double pointLatitude = points.latitudes()[i];
+                double pointLongitude = points.longitudes()[i];
+                // Cheap bounding-box check before the haversine
+                double lonGap = Math.abs(pointLongitude - longitude);
+                if (Math.abs(pointLatitude - latitude) > latDelta || Math.min(lonGap, 360d - lonGap) > lonDelta) {
+                    continue;
+                }
+                double distance = GeoDistance.haversineMeters(latitude, longitude, pointLatitude, pointLongitude);
+                if (distance <= radius) {
+                    matches.add(points.ids()[i], distance);
+                }
+            }
+        }
+        candidateCountSummary.record(matches.size());
+        return matches;
+    }
+
+    private GeoPoints loadCell(String cell) {
+        GeoPoints cached = geoCellCache.get(cell).orElse(null);
+        if (cached != null) {
+            cellCacheHitCounter.increment();
+            return cached;
+        }
+        cellCacheMissCounter.increment();
+
+        long stamp = geoCellCache.stamp();
+        GeohashUtils.CellBounds bounds = GeohashUtils.bounds(cell);
+        GeoPoints points = geoIndex.findInBox(
+                bounds.minLatitude(), bounds.minLongitude(),
+                bounds.maxLatitude(), bounds.maxLongitude(),
+                geoCellCache.maxPoints() + 1);
+        if (points.size() > geoCellCache.maxPoints()) {
+            points = GeoCellCache.OVERSIZED;
+        }
+        geoCellCache.putIfUnchanged(cell, points, stamp);
+        return points;
+    }
+
+    /**
+     * Position right after the cursor anchor. The rank is only a hint: when the snapshot was
+     * rebuilt in between, the page resumes at the first hit ordered after the anchor's
+     * (distance, businessId), whether or not the anchor itself is still there.
+     */
+    private static int resumePosition(GeoHits hits, SearchCursor after) {
+        int rank = after.rank();
+        if (rank > 0 && rank <= hits.size() && hits.id(rank - 1) == after.businessId()) {
+            return rank;
+        }
+        return hits.firstAfter(after.distance(), after.businessId());
+    }
+
+    /**
+     * When the geo index returned no more than {@code complete} candidates, the result set is
+     * complete and its size is the exact total. Otherwise fall back to the index's counting path,
+     * which may be an estimate but never transfers the candidates themselves.
+     */
+    private int resolveTotal(double latitude, double longitude, int radius, int fetched, int complete) {
+        if (fetched <= complete) {
+            return fetched;
+        }
+        return Math.max(fetched, geoIndex.countByRadius(latitude, longitude, radius));
+    }
+
     private int resolveLimit(Integer limit) {
         if (limit == null) {
             return defaultLimit;
@@ -125,26 +383,71 @@ public class SearchService {
         return limit;
     }
 
-    private int decodeCursor(String cursor) {
+    private SearchCursor decodeCursor(String cursor, double latitude, double longitude, int radius) {
         if (cursor == null || cursor.isBlank()) {
-            return 0;
+            return null;
         }
 
+        SearchCursor decoded;
         try {
-            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
-            int offset = Integer.parseInt(decoded);
-            if (offset < 0) {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("cursor must have 5 parts");
+            }
+            decoded = new SearchCursor(
+                    parts[0],
+                    Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]),
+                    Double.parseDouble(parts[3]),
+                    Long.parseLong(parts[4]));
+            if (decoded.rank() < 0) {
                 throw new IllegalArgumentException("cursor must be positive");
             }
-            return offset;
         } catch (IllegalArgumentException ex) {
             throw new IllegalArgumentException("invalid cursor");
         }
+
+        if (decoded.radius() <= 0 || decoded.radius() > radius
+                || !decoded.fingerprint().equals(fingerprint(latitude, longitude, radius, decoded.radius()))) {
+            throw new IllegalArgumentException("cursor does not match the search query");
+        }
+        return decoded;
     }
 
-    private String encodeCursor(int offset) {
+    private String encodeCursor(SearchCursor cursor) {
+        String raw = cursor.fingerprint() + ":" + cursor.radius() + ":" + cursor.rank() + ":" + cursor.distance()
+                + ":" + cursor.businessId();
         return Base64.getUrlEncoder().withoutPadding()
-                .encodeToString(String.valueOf(offset).getBytes(StandardCharsets.UTF_8));
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Identifies the query (center and requested radius) together with the radius searched.
+     */
+    private static String fingerprint(double latitude, double longitude, int radius, int searchRadius) {
+        long hash = mix(Double.doubleToLongBits(latitude));
+        hash = mix(hash ^ Double.doubleToLongBits(longitude));
+        hash = mix(hash ^ radius);
+        hash = mix(hash ^ searchRadius);
+        return Long.toHexString(hash);
+    }
+
+    private static long mix(long value) {
+        long z = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Keyset cursor: the query it belongs to, the radius actually searched, and the rank and
+     * (distance, businessId) of the last candidate handed out.
+     */
+    private record SearchCursor(String fingerprint, int radius, int rank, double distance, long businessId) {
+    }
+
+    private record CandidatePage(GeoHits hits, int start, int end, boolean hasNext, int total) {
     }
 
+    private record ZoneMeters(Counter capped, DistributionSummary candidates) {
+    }
 }
@@ -0,0 +1,14 @@
+-- Optional: range-partition change_log by id so ChangeLogRetentionJob drops expired
+-- partitions instead of deleting rows. Run once by hand during a maintenance window
+-- (the ALTER rebuilds the table); the job detects partitioning on its next run.
+--
+-- MySQL does not support foreign keys on partitioned tables, so the business_id FK goes.
+-- Set the first bound above the current MAX(id); the job keeps one partition of
+-- headroom (app.index-sync.retention.partition-size) ahead of the newest id after that.
+ALTER TABLE change_log DROP FOREIGN KEY fk_change_log_business_id;
+
+ALTER TABLE change_log
+  PARTITION BY RANGE (id) (
+    PARTITION p1000000 VALUES LESS THAN (1000000),
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+  );
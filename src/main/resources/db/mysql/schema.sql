@@ -1,6 +1,7 @@
-CREATE TABLE IF NOT EXISTS business_id_sequence (
-  id BIGINT NOT NULL AUTO_INCREMENT,
-  PRIMARY KEY (id)
+CREATE TABLE IF NOT EXISTS id_block_sequence (
+  name VARCHAR(32) NOT NULL,
+  next_value BIGINT NOT NULL,
+  PRIMARY KEY (name)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 CREATE TABLE IF NOT EXISTS business (
@@ -22,6 +23,10 @@ CREATE TABLE IF NOT EXISTS business (
   KEY idx_business_status_updated_at (status, updated_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- First id of the next business id block; seeded once above any existing business id
+INSERT IGNORE INTO id_block_sequence (name, next_value)
+SELECT 'business', COALESCE(MAX(id), 0) + 1 FROM business;
+
 CREATE TABLE IF NOT EXISTS geohash_index (
   geohash VARCHAR(12) NOT NULL,
   business_id BIGINT NOT NULL,
@@ -39,16 +44,75 @@ CREATE TABLE IF NOT EXISTS change_log (
   processed TINYINT(1) NOT NULL DEFAULT 0,
   created_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
   processed_at DATETIME(6) NULL,
+  partition_key TINYINT UNSIGNED AS (business_id % 16) VIRTUAL,
   PRIMARY KEY (id),
   KEY idx_change_log_processed_id (processed, id),
   KEY idx_change_log_processed_created_at (processed, created_at),
+  KEY idx_change_log_processed_partition_key_id (processed, partition_key, id),
   CONSTRAINT fk_change_log_business_id
     FOREIGN KEY (business_id) REFERENCES business (id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- change_log created before partition_key: a virtual column and its index are added in
+-- place, without rebuilding the table or blocking appends
+SET @add_change_log_partition_key = (
+  SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE change_log ADD COLUMN partition_key TINYINT UNSIGNED AS (business_id % 16) VIRTUAL, ADD KEY idx_change_log_processed_partition_key_id (processed, partition_key, id), ALGORITHM=INPLACE, LOCK=NONE',
+    'DO 0')
+  FROM information_schema.columns
+  WHERE table_schema = DATABASE() AND table_name = 'change_log' AND column_name = 'partition_key');
+PREPARE add_change_log_partition_key FROM @add_change_log_partition_key;
+EXECUTE add_change_log_partition_key;
+DEALLOCATE PREPARE add_change_log_partition_key;
+
 CREATE TABLE IF NOT EXISTS geohash_index_hot (
     geohash VARCHAR(12) NOT NULL,
     business_id BIGINT NOT NULL,
     PRIMARY KEY (geohash, business_id),
     KEY idx_geohash_hot_biz_id (business_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS hot_zone_config (
+    geohash_prefix VARCHAR(10) NOT NULL PRIMARY KEY COMMENT 'Hot Zone Prefix (e.g. wydm)',
+    description VARCHAR(255) COMMENT 'Description (e.g. Gangnam Station Area)',
+    radius_limit INT DEFAULT 500 COMMENT 'Max Search Radius Limit in Meters',
+    is_active BOOLEAN DEFAULT TRUE COMMENT 'Whether this rule is active',
+    shard VARCHAR(32) NOT NULL DEFAULT 'hot' COMMENT 'geohash_index shard of the zone (app.geohash-index.shards)',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- hot_zone_config created before shards has no shard column (MySQL has no ADD COLUMN IF NOT EXISTS)
+SET @add_hot_zone_shard = (
+  SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE hot_zone_config ADD COLUMN shard VARCHAR(32) NOT NULL DEFAULT ''hot'' COMMENT ''geohash_index shard of the zone (app.geohash-index.shards)'' AFTER is_active',
+    'DO 0')
+  FROM information_schema.columns
+  WHERE table_schema = DATABASE() AND table_name = 'hot_zone_config' AND column_name = 'shard');
+PREPARE add_hot_zone_shard FROM @add_hot_zone_shard;
+EXECUTE add_hot_zone_shard;
+DEALLOCATE PREPARE add_hot_zone_shard;
+
+-- Hot zone routing (prefix=shard,...) last recorded by any instance; NULL until the first
+-- startup records it. A refresh diffs the configuration against it under a row lock.
+CREATE TABLE IF NOT EXISTS hot_zone_routing (
+  id TINYINT NOT NULL,
+  routing TEXT NULL,
+  updated_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT IGNORE INTO hot_zone_routing (id, routing) VALUES (1, NULL);
+
+-- Routing changes whose geohash_index rows are not all moved yet, with the scan position
+CREATE TABLE IF NOT EXISTS hot_zone_migration (
+  id BIGINT NOT NULL AUTO_INCREMENT,
+  previous_routing TEXT NOT NULL,
+  prefixes TEXT NOT NULL,
+  prefix_index INT NOT NULL DEFAULT 0,
+  shard VARCHAR(32) NOT NULL DEFAULT '',
+  after_geohash VARCHAR(12) NOT NULL DEFAULT '',
+  after_business_id BIGINT NOT NULL DEFAULT 0,
+  created_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+  PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -3,6 +3,8 @@ package com.systemdesigncasestudy.weeks1changha;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.systemdesigncasestudy.weeks1changha.indexsync.service.IndexSyncService;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -10,7 +12,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -18,7 +22,8 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+// Push propagation would index new businesses before the explicit syncOnce calls below
+@SpringBootTest(properties = "app.index-sync.push-enabled=false")
 @AutoConfigureMockMvc
 class ProximityServiceIntegrationTest {
 
@@ -111,6 +116,74 @@ class ProximityServiceIntegrationTest {
             .andExpect(jsonPath("$.total").value(0));
     }
 
+    @Test
+    void cursorPaginationWalksResultsInDistanceOrder() throws Exception {
+        double latitude = -33.8688;
+        double longitude = 151.2093;
+        List<Long> createdIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            String createRequest = """
+                {
+                  "ownerId": 7,
+                  "name": "Paging %d",
+                  "category": "CAFE",
+                  "phone": "02-0000-0000",
+                  "address": "Sydney",
+                  "latitude": %s,
+                  "longitude": %s
+                }
+                """.formatted(i, latitude + i * 0.0005, longitude);
+            MvcResult createResult = mockMvc.perform(post("/v1/business")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(createRequest))
+                .andExpect(status().isCreated())
+                .andReturn();
+            createdIds.add(objectMapper.readTree(createResult.getResponse().getContentAsString()).get("id").asLong());
+        }
+
+        indexSyncService.syncOnce(100);
+
+        List<Long> pagedIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder pageRequest = get("/v1/search/nearby")
+                .param("latitude", String.valueOf(latitude))
+                .param("longitude", String.valueOf(longitude))
+                .param("radius", "500")
+                .param("limit", "1");
+            if (cursor != null) {
+                pageRequest.param("cursor", cursor);
+            }
+            MvcResult pageResult = mockMvc.perform(pageRequest)
+                .andExpect(status().isOk())
+                .andReturn();
+            JsonNode page = objectMapper.readTree(pageResult.getResponse().getContentAsString());
+            for (JsonNode business : page.get("businesses")) {
+                pagedIds.add(business.get("id").asLong());
+            }
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+
+            if (cursor != null) {
+                mockMvc.perform(get("/v1/search/nearby")
+                        .param("latitude", String.valueOf(latitude))
+                        .param("longitude", String.valueOf(longitude))
+                        .param("radius", "1000")
+                        .param("cursor", cursor))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.code").value("INVALID_ARGUMENT"));
+            }
+        } while (cursor != null);
+
+        pagedIds.retainAll(createdIds);
+        assertEquals(createdIds, pagedIds);
+
+        for (Long id : createdIds) {
+            mockMvc.perform(delete("/v1/business/{id}", id))
+                .andExpect(status().isNoContent());
+        }
+        indexSyncService.syncOnce(100);
+    }
+
     @Test
     void searchValidationWorks() throws Exception {
         mockMvc.perform(get("/v1/search/nearby")
@@ -0,0 +1,134 @@
+package com.systemdesigncasestudy.weeks1changha.business.repository;
+
+import com.systemdesigncasestudy.weeks1changha.support.RecordingTransactionManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionDefinition;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MysqlBusinessRepositoryTest {
+
+    private static final int BLOCK_SIZE = 10;
+
+    @Test
+    void leaseCommitsInATransactionOfItsOwn() {
+        RecordingTransactionManager transactions = new RecordingTransactionManager();
+        IdBlockSequence sequence = new IdBlockSequence(transactions);
+        MysqlBusinessRepository repository = new MysqlBusinessRepository(sequence, transactions, BLOCK_SIZE);
+
+        for (long expected = 1; expected <= BLOCK_SIZE; expected++) {
+            assertEquals(expected, repository.nextId());
+        }
+
+        // One lease for the whole block: the increment and LAST_INSERT_ID() on one connection,
+        // committed on its own even when called inside a caller's transaction
+        assertEquals(List.of(TransactionDefinition.PROPAGATION_REQUIRES_NEW), transactions.propagations());
+        assertEquals(1, transactions.committed().size());
+        assertEquals(2, sequence.statements.size());
+        Statement increment = sequence.statements.get(0);
+        assertTrue(increment.sql().contains("SET next_value = LAST_INSERT_ID(next_value) + ?"));
+        assertEquals(List.of(BLOCK_SIZE, "business"), increment.args());
+        assertEquals("SELECT LAST_INSERT_ID()", sequence.statements.get(1).sql());
+        for (Statement statement : sequence.statements) {
+            assertEquals(1, statement.openTransactions());
+        }
+
+        assertEquals(BLOCK_SIZE + 1L, repository.nextId());
+        assertEquals(2, transactions.committed().size());
+    }
+
+    @Test
+    void concurrentLeasesHandOutDisjointIds() throws Exception {
+        RecordingTransactionManager transactions = new RecordingTransactionManager();
+        IdBlockSequence sequence = new IdBlockSequence(transactions);
+        // Two instances sharing one sequence row, several creating threads on each
+        List<MysqlBusinessRepository> instances = List.of(
+                new MysqlBusinessRepository(sequence, transactions, BLOCK_SIZE),
+                new MysqlBusinessRepository(sequence, transactions, BLOCK_SIZE));
+        int threadsPerInstance = 4;
+        int idsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(instances.size() * threadsPerInstance);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (MysqlBusinessRepository instance : instances) {
+                for (int t = 0; t < threadsPerInstance; t++) {
+                    Callable<Integer> creator = () -> {
+                        start.await();
+                        int duplicates = 0;
+                        for (int i = 0; i < idsPerThread; i++) {
+                            if (!ids.add(instance.nextId())) {
+                                duplicates++;
+                            }
+                        }
+                        return duplicates;
+                    };
+                    results.add(executor.submit(creator));
+                }
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int total = instances.size() * threadsPerInstance * idsPerThread;
+        assertEquals(total, ids.size());
+        // Every id comes from a leased block: at most one partly used block per instance is lost
+        assertTrue(sequence.leased() <= total + instances.size() * BLOCK_SIZE);
+        // A lease never needs a second connection on the thread that triggers it
+        assertEquals(1, transactions.maxOpenTransactions());
+    }
+
+    private record Statement(String sql, List<Object> args, int openTransactions) {
+    }
+
+    /**
+     * id_block_sequence row: the UPDATE holds the row lock and LAST_INSERT_ID is per connection,
+     * modelled here as per thread.
+     */
+    private static final class IdBlockSequence extends JdbcTemplate {
+
+        private final RecordingTransactionManager transactions;
+        private final ThreadLocal<Long> lastInsertId = new ThreadLocal<>();
+        private final List<Statement> statements = new CopyOnWriteArrayList<>();
+        private long nextValue = 1L;
+
+        IdBlockSequence(RecordingTransactionManager transactions) {
+            this.transactions = transactions;
+        }
+
+        @Override
+        public synchronized int update(String sql, Object... args) {
+            statements.add(new Statement(sql, List.of(args), transactions.openTransactions()));
+            lastInsertId.set(nextValue);
+            nextValue += ((Number) args[0]).longValue();
+            return 1;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            statements.add(new Statement(sql, List.of(args), transactions.openTransactions()));
+            return requiredType.cast(lastInsertId.get());
+        }
+
+        synchronized long leased() {
+            return nextValue - 1L;
+        }
+    }
+}
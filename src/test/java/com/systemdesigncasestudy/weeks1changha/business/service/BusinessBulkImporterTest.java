@@ -0,0 +1,121 @@
+package com.systemdesigncasestudy.weeks1changha.business.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
+import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessBulkImportError;
+import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessBulkImportResponse;
+import com.systemdesigncasestudy.weeks1changha.business.repository.InMemoryBusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.cache.BusinessCache;
+import com.systemdesigncasestudy.weeks1changha.cache.CacheFactory;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeEventQueue;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeLogBacklog;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeLogWriteTracker;
+import com.systemdesigncasestudy.weeks1changha.support.RecordingTransactionManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BusinessBulkImporterTest {
+
+    private static final String VALID =
+            "{\"ownerId\":1,\"name\":\"cafe\",\"category\":\"cafe\",\"address\":\"Seoul\","
+                    + "\"latitude\":37.5665,\"longitude\":126.9780}";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FailingBusinessRepository businessRepository = new FailingBusinessRepository();
+    private final BusinessBulkImporter importer = new BusinessBulkImporter(
+            new BusinessService(
+                    businessRepository,
+                    new InMemoryChangeLogRepository(),
+                    new BusinessCache(new CacheFactory(meterRegistry), 60, 100),
+                    new ChangeEventQueue(meterRegistry, new ChangeLogBacklog(meterRegistry, 1), true, 1, 100),
+                    new ChangeLogWriteTracker(),
+                    new TransactionTemplate(new RecordingTransactionManager()),
+                    meterRegistry),
+            new ObjectMapper(),
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            2);
+
+    @Test
+    void invalidLinesAreSkippedAndReportedWithTheirLineNumbers() throws IOException {
+        BusinessBulkImportResponse response = importNdjson(
+                VALID,
+                "",
+                "{\"ownerId\":1,\"name\":",
+                VALID.replace("\"name\":\"cafe\"", "\"name\":\" \""),
+                VALID);
+
+        // Blank lines are not counted but still advance the line number
+        assertEquals(4, response.received());
+        assertEquals(2, response.created());
+        assertEquals(2, response.rejected());
+        assertTrue(response.completed());
+        assertEquals(List.of(
+                new BusinessBulkImportError(3, "invalid JSON"),
+                new BusinessBulkImportError(4, "name must not be blank")), response.errors());
+        assertEquals(2, businessRepository.saved);
+    }
+
+    @Test
+    void onlyTheFirstErrorsAreReported() throws IOException {
+        String[] lines = new String[150];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "not json";
+        }
+
+        BusinessBulkImportResponse response = importNdjson(lines);
+
+        assertEquals(150, response.rejected());
+        assertEquals(100, response.errors().size());
+        assertEquals(100, response.errors().get(99).line());
+    }
+
+    @Test
+    void failingBatchStopsTheImportAndKeepsTheBatchesBeforeIt() throws IOException {
+        businessRepository.failOnBatch = 2;
+
+        BusinessBulkImportResponse response = importNdjson(VALID, "not json", VALID, VALID, VALID, VALID);
+
+        // The second batch holds lines 4 and 5; line 6 is never read
+        assertFalse(response.completed());
+        assertEquals(5, response.received());
+        assertEquals(2, response.created());
+        assertEquals(3, response.rejected());
+        assertEquals(List.of(
+                new BusinessBulkImportError(2, "invalid JSON"),
+                new BusinessBulkImportError(4, "batch of 2 failed: Deadlock found")), response.errors());
+        assertEquals(2, businessRepository.saved);
+    }
+
+    private BusinessBulkImportResponse importNdjson(String... lines) throws IOException {
+        byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        return importer.importNdjson(new ByteArrayInputStream(body));
+    }
+
+    private static final class FailingBusinessRepository extends InMemoryBusinessRepository {
+
+        private int failOnBatch;
+        private int batches;
+        private int saved;
+
+        @Override
+        public void saveAll(List<Business> businesses) {
+            if (++batches == failOnBatch) {
+                throw new IllegalStateException("Deadlock found");
+            }
+            super.saveAll(businesses);
+            saved += businesses.size();
+        }
+    }
+}
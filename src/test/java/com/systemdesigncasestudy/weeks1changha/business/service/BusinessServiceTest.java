@@ -0,0 +1,126 @@
+package com.systemdesigncasestudy.weeks1changha.business.service;
+
+import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
+import com.systemdesigncasestudy.weeks1changha.business.dto.BusinessCreateRequest;
+import com.systemdesigncasestudy.weeks1changha.business.repository.InMemoryBusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.cache.BusinessCache;
+import com.systemdesigncasestudy.weeks1changha.cache.CacheFactory;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeEventQueue;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeLogBacklog;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeLogWriteTracker;
+import com.systemdesigncasestudy.weeks1changha.support.RecordingTransactionManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BusinessServiceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingTransactionManager transactions = new RecordingTransactionManager();
+    private final LeaseRecordingRepository businessRepository = new LeaseRecordingRepository(transactions);
+    private final FailingChangeLogRepository changeLogRepository = new FailingChangeLogRepository(transactions);
+    private final ChangeEventQueue changeEventQueue =
+            new ChangeEventQueue(meterRegistry, new ChangeLogBacklog(meterRegistry, 1), true, 1, 100);
+    private final BusinessService service = new BusinessService(
+            businessRepository,
+            changeLogRepository,
+            new BusinessCache(new CacheFactory(meterRegistry), 60, 100),
+            changeEventQueue,
+            new ChangeLogWriteTracker(),
+            new TransactionTemplate(transactions),
+            meterRegistry);
+
+    @Test
+    void idsAreLeasedOutsideTheWriteTransaction() {
+        service.create(request("one"));
+        service.createAll(List.of(request("two"), request("three")));
+
+        // A lease inside the write transaction would hold a second connection per request
+        assertEquals(List.of(0, 0, 0), businessRepository.openTransactionsAtLease);
+        assertEquals(2, transactions.committed().size());
+        assertEquals(1, transactions.maxOpenTransactions());
+    }
+
+    @Test
+    void businessRowAndChangeEventCommitInOneTransaction() throws InterruptedException {
+        long id = service.create(request("one"));
+
+        assertEquals(1, transactions.committed().size());
+        assertSame(transactions.committed().get(0), businessRepository.savedIn.get(0));
+        assertSame(transactions.committed().get(0), changeLogRepository.appendedIn.get(0));
+        // Pushed to the sync worker only after the commit
+        assertEquals(List.of(id), changeEventQueue.take(0, 10, 0).stream().map(BusinessChangeEvent::businessId).toList());
+    }
+
+    @Test
+    void failedChangeLogAppendRollsBackTheBusinessRow() throws InterruptedException {
+        changeLogRepository.failAppends = true;
+
+        assertThrows(IllegalStateException.class, () -> service.create(request("one")));
+
+        // The row was written in the transaction that rolled back, so it never became visible
+        assertEquals(List.of(), transactions.committed());
+        assertEquals(1, transactions.rolledBack().size());
+        assertSame(transactions.rolledBack().get(0), businessRepository.savedIn.get(0));
+        assertEquals(List.of(), changeEventQueue.take(0, 10, 0));
+    }
+
+    private static BusinessCreateRequest request(String name) {
+        return new BusinessCreateRequest(1L, name, "cafe", null, "Seoul", 37.5665, 126.9780);
+    }
+
+    private static final class LeaseRecordingRepository extends InMemoryBusinessRepository {
+
+        private final RecordingTransactionManager transactions;
+        private final List<Integer> openTransactionsAtLease = new ArrayList<>();
+        private final List<TransactionStatus> savedIn = new ArrayList<>();
+
+        LeaseRecordingRepository(RecordingTransactionManager transactions) {
+            this.transactions = transactions;
+        }
+
+        @Override
+        public long nextId() {
+            openTransactionsAtLease.add(transactions.openTransactions());
+            return super.nextId();
+        }
+
+        @Override
+        public Business save(Business business) {
+            savedIn.add(transactions.current());
+            return super.save(business);
+        }
+    }
+
+    private static final class FailingChangeLogRepository extends InMemoryChangeLogRepository {
+
+        private final RecordingTransactionManager transactions;
+        private final List<TransactionStatus> appendedIn = new ArrayList<>();
+        private boolean failAppends;
+
+        FailingChangeLogRepository(RecordingTransactionManager transactions) {
+            this.transactions = transactions;
+        }
+
+        @Override
+        public synchronized BusinessChangeEvent append(long businessId, ChangeType changeType) {
+            if (failAppends) {
+                // As from a change_log insert that hit a lock wait timeout
+                throw new IllegalStateException("Lock wait timeout exceeded");
+            }
+            appendedIn.add(transactions.current());
+            return super.append(businessId, changeType);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.systemdesigncasestudy.weeks1changha.cache;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedExpiringCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @Test
+    void staysWithinMaxWeight() {
+        BoundedExpiringCache<Integer, String> cache = new BoundedExpiringCache<>(100, value -> 1, CacheMetrics.NONE, Runnable::run);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, "v" + i, TTL);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.weight());
+    }
+
+    @Test
+    void frequentlyUsedEntriesSurviveAScan() {
+        BoundedExpiringCache<Integer, String> cache = new BoundedExpiringCache<>(100, value -> 1, CacheMetrics.NONE, Runnable::run);
+        for (int round = 0; round < 5; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                if (cache.get(hot).isEmpty()) {
+                    cache.put(hot, "hot", TTL);
+                }
+            }
+        }
+
+        // One-off keys, each read once and cached
+        for (int cold = 1_000; cold < 20_000; cold++) {
+            cache.get(cold);
+            cache.put(cold, "cold", TTL);
+        }
+
+        int survivors = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (cache.get(hot).isPresent()) {
+                survivors++;
+            }
+        }
+        assertTrue(survivors >= 45, "hot entries evicted by scan: " + (50 - survivors));
+    }
+
+    @Test
+    void weighsEntriesAndRejectsOversizedValues() {
+        BoundedExpiringCache<String, int[]> cache = new BoundedExpiringCache<>(10, value -> value.length, CacheMetrics.NONE, Runnable::run);
+        cache.put("a", new int[4], TTL);
+        cache.put("b", new int[4], TTL);
+        cache.put("c", new int[4], TTL);
+        cache.cleanUp();
+        assertTrue(cache.weight() <= 10);
+
+        cache.put("huge", new int[11], TTL);
+        assertFalse(cache.get("huge").isPresent());
+    }
+
+    @Test
+    void cleanUpDropsExpiredEntries() {
+        BoundedExpiringCache<Integer, String> cache = new BoundedExpiringCache<>(100, value -> 1, CacheMetrics.NONE, Runnable::run);
+        cache.put(1, "expired", Duration.ZERO);
+        cache.put(2, "live", TTL);
+
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.weight());
+        assertEquals("live", cache.get(2).orElseThrow());
+    }
+}
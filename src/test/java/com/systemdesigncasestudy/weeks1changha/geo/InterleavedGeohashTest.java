@@ -0,0 +1,29 @@
+package com.systemdesigncasestudy.weeks1changha.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InterleavedGeohashTest {
+
+    @Test
+    void redisEncodingMatchesGeoSetScores() {
+        // Scores Redis stores for the GEOADD examples in its documentation
+        assertEquals(3479099956230698L, InterleavedGeohash.REDIS.encode(38.115556, 13.361389));
+        assertEquals(3479447370796909L, InterleavedGeohash.REDIS.encode(37.502669, 15.087269));
+    }
+
+    @Test
+    void coveringCellsContainTheCenterPoint() {
+        long key = InterleavedGeohash.WGS84.encode(37.4991, 127.0313);
+        InterleavedGeohash.Covering covering = InterleavedGeohash.WGS84.cover(37.4991, 127.0313, 500);
+
+        assertEquals(9, covering.cellCount());
+        boolean covered = false;
+        for (int cell = 0; cell < covering.cellCount(); cell++) {
+            covered |= covering.from(cell) <= key && key < covering.to(cell);
+        }
+        assertTrue(covered);
+    }
+}
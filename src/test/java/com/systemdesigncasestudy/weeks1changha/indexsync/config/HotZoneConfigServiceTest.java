@@ -0,0 +1,179 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.config;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlHotZoneConfigRepository;
+import com.systemdesigncasestudy.weeks1changha.support.RecordingTransactionManager;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotZoneConfigServiceTest {
+
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new RecordingTransactionManager());
+
+    @Test
+    void shardChangesAreMigratedWhileReadsStillSeeTheOldZones() {
+        HotZoneConfig gangnam = new HotZoneConfig("wydm", "Gangnam", 500, true, "hot");
+        HotZoneConfig station = new HotZoneConfig("wydm9q", "Gangnam Station", 300, true, "hot");
+        HotZoneConfig hongdae = new HotZoneConfig("wydq", "Hongdae", 500, true, "hot");
+        ConfigRows rows = new ConfigRows(List.of(gangnam, station, hongdae));
+        rows.recordRoutingOf(rows.zones);
+        HotZoneConfigService service = new HotZoneConfigService(rows, transactionTemplate);
+        assertEquals(List.of(), service.pendingMigrations());
+
+        HotZoneTrie before = service.zonesForReads().get(0);
+        // Gangnam (with the nested station zone) moves to its own shard, Hongdae is dropped
+        rows.zones = List.of(
+                new HotZoneConfig("wydm", "Gangnam", 500, true, "hot-2"),
+                new HotZoneConfig("wydm9q", "Gangnam Station", 300, true, "hot-2"));
+        service.refreshConfig();
+
+        List<ZoneMigration> pending = service.pendingMigrations();
+        assertEquals(1, pending.size());
+        assertEquals(List.of("wydm", "wydq"), pending.get(0).prefixes());
+        assertEquals(2, service.zonesForReads().size());
+        assertEquals("hot", service.zonesForReads().get(1).longestMatch("wydq1").shard());
+        assertEquals("hot", before.longestMatch("wydm9q").shard());
+
+        // Another instance seeing the same change records nothing new
+        service.refreshConfig();
+        assertEquals(1, rows.migrations.size());
+
+        assertTrue(service.completeMigration(pending.get(0), ZoneMigration.Cursor.START));
+        assertEquals(List.of(), service.pendingMigrations());
+        assertEquals(1, service.zonesForReads().size());
+        assertEquals(List.of(), rows.migrations);
+    }
+
+    @Test
+    void pendingMigrationsAndChangesMadeWhileDownSurviveARestart() {
+        ConfigRows rows = new ConfigRows(List.of(new HotZoneConfig("wydm", "Gangnam", 500, true, "hot")));
+        rows.recordRoutingOf(rows.zones);
+        new HotZoneConfigService(rows, transactionTemplate);
+
+        // Changed while no instance ran
+        rows.zones = List.of(new HotZoneConfig("wydm", "Gangnam", 500, true, "hot-2"));
+        HotZoneConfigService restarted = new HotZoneConfigService(rows, transactionTemplate);
+        assertEquals(List.of("wydm"), restarted.pendingMigrations().get(0).prefixes());
+        assertEquals("hot", restarted.zonesForReads().get(1).longestMatch("wydm9q").shard());
+
+        // Restarted again mid-migration: still read from the old shard, cursor kept
+        ZoneMigration.Cursor cursor = new ZoneMigration.Cursor(0, "hot", "wydm9q", 42L);
+        rows.migrations.set(0, withCursor(rows.migrations.get(0), cursor));
+        HotZoneConfigService again = new HotZoneConfigService(rows, transactionTemplate);
+        assertEquals(1, again.pendingMigrations().size());
+        assertEquals(cursor, again.pendingMigrations().get(0).cursor());
+        assertEquals(2, again.zonesForReads().size());
+
+        // A completion is compare-and-set on the cursor another instance may have moved
+        assertFalse(again.completeMigration(again.pendingMigrations().get(0), ZoneMigration.Cursor.START));
+        assertTrue(again.completeMigration(again.pendingMigrations().get(0), cursor));
+    }
+
+    @Test
+    void firstStartupWithoutARecordedRoutingChecksEveryRow() {
+        ConfigRows rows = new ConfigRows(List.of(new HotZoneConfig("wydm", "Gangnam", 500, true, "hot")));
+        HotZoneConfigService service = new HotZoneConfigService(rows, transactionTemplate);
+
+        assertEquals(List.of(""), service.pendingMigrations().get(0).prefixes());
+        assertEquals(Map.of("wydm", "hot"), rows.routing);
+    }
+
+    @Test
+    void initialLoadFailureFailsStartupAndLaterFailuresKeepTheZones() {
+        ConfigRows rows = new ConfigRows(null);
+        assertThrows(IllegalStateException.class, () -> new HotZoneConfigService(rows, transactionTemplate));
+
+        rows.zones = List.of(new HotZoneConfig("wydm", "Gangnam", 500, true, "hot"));
+        rows.recordRoutingOf(rows.zones);
+        HotZoneConfigService service = new HotZoneConfigService(rows, transactionTemplate);
+        rows.zones = null;
+        service.refreshConfig();
+
+        assertEquals("hot", service.findConfig("wydm9q").orElseThrow().shard());
+        assertEquals(List.of(), service.pendingMigrations());
+    }
+
+    private static ZoneMigration withCursor(ZoneMigration migration, ZoneMigration.Cursor cursor) {
+        return new ZoneMigration(migration.id(), migration.previous(), migration.prefixes(), cursor, migration.createdAt());
+    }
+
+    /**
+     * hot_zone_config, hot_zone_routing and hot_zone_migration in memory.
+     */
+    private static final class ConfigRows extends MysqlHotZoneConfigRepository {
+
+        private List<HotZoneConfig> zones;
+        private Map<String, String> routing;
+        private final List<ZoneMigration> migrations = new ArrayList<>();
+        private long nextMigrationId = 1L;
+
+        ConfigRows(List<HotZoneConfig> zones) {
+            super(null);
+            this.zones = zones;
+        }
+
+        void recordRoutingOf(List<HotZoneConfig> configs) {
+            routing = new TreeMap<>();
+            configs.forEach(zone -> routing.put(zone.geohashPrefix(), zone.shard()));
+        }
+
+        @Override
+        public List<HotZoneConfig> findAllActive() {
+            if (zones == null) {
+                // As from a query against a hot_zone_config without the shard column
+                throw new IllegalStateException("Unknown column 'shard' in 'field list'");
+            }
+            return zones;
+        }
+
+        @Override
+        public Optional<Map<String, String>> findRecordedRoutingForUpdate() {
+            return Optional.ofNullable(routing);
+        }
+
+        @Override
+        public void saveRecordedRouting(Map<String, String> routing) {
+            this.routing = routing;
+        }
+
+        @Override
+        public void insertMigration(Map<String, String> previousRouting, List<String> prefixes) {
+            List<HotZoneConfig> previous = new ArrayList<>();
+            previousRouting.forEach((prefix, shard) -> previous.add(new HotZoneConfig(prefix, null, 0, true, shard)));
+            migrations.add(new ZoneMigration(nextMigrationId++, HotZoneTrie.of(previous), List.copyOf(prefixes),
+                    ZoneMigration.Cursor.START, Instant.now()));
+        }
+
+        @Override
+        public List<ZoneMigration> findPendingMigrations() {
+            return List.copyOf(migrations);
+        }
+
+        @Override
+        public boolean updateCursor(long migrationId, ZoneMigration.Cursor expected, ZoneMigration.Cursor next) {
+            for (int i = 0; i < migrations.size(); i++) {
+                ZoneMigration migration = migrations.get(i);
+                if (migration.id() == migrationId && migration.cursor().equals(expected)) {
+                    migrations.set(i, withCursor(migration, next));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean deleteMigration(long migrationId, ZoneMigration.Cursor expected) {
+            return migrations.removeIf(migration -> migration.id() == migrationId && migration.cursor().equals(expected));
+        }
+    }
+}
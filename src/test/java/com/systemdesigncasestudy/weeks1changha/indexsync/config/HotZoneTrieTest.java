@@ -0,0 +1,41 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.config;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotZoneTrieTest {
+
+    @Test
+    void longestMatchPrefersTheMostSpecificZone() {
+        HotZoneConfig seoul = new HotZoneConfig("wyd", "Seoul", 1000, true, "hot");
+        HotZoneConfig gangnam = new HotZoneConfig("wydm", "Gangnam", 500, true, "hot");
+        HotZoneConfig station = new HotZoneConfig("wydm9q", "Gangnam Station", 300, true, "hot");
+        HotZoneTrie trie = HotZoneTrie.of(List.of(seoul, gangnam, station));
+
+        assertEquals(3, trie.size());
+        assertEquals(station, trie.longestMatch("wydm9qyz"));
+        assertEquals(gangnam, trie.longestMatch("wydm9r00"));
+        assertEquals(seoul, trie.longestMatch("wydq"));
+        assertNull(trie.longestMatch("wy"));
+        assertNull(trie.longestMatch("xn77"));
+
+        assertEquals(List.of(seoul, gangnam, station), trie.nestedIn("wy"));
+        assertEquals(List.of(gangnam, station), trie.nestedIn("wyd"));
+        assertEquals(List.of(), trie.nestedIn("wydm9q"));
+    }
+
+    @Test
+    void prefixesOutsideTheSupportedLengthsAreRejected() {
+        assertTrue(HotZoneTrie.isValidPrefix("wyd"));
+        assertTrue(HotZoneTrie.isValidPrefix("wydm9qyz"));
+        assertFalse(HotZoneTrie.isValidPrefix("wy"));
+        assertFalse(HotZoneTrie.isValidPrefix("wydm9qyzz"));
+        assertFalse(HotZoneTrie.isValidPrefix("wyda"));
+        assertNull(HotZoneTrie.EMPTY.longestMatch("wydm"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GeoHitsTest {
+
+    @Test
+    void sortsByDistanceThenBusinessId() {
+        double near = 100.0;
+        // Same float as near, larger as a double
+        double nearPlus = Math.nextUp(near);
+        GeoHits.Builder builder = new GeoHits.Builder();
+        builder.add(9L, 250.0);
+        builder.add(7L, nearPlus);
+        builder.add(5L, near);
+        builder.add(3L, 250.0);
+        builder.add(8L, near);
+
+        GeoHits hits = builder.build(10);
+
+        assertArrayEquals(new long[] {5L, 8L, 7L, 3L, 9L}, hits.ids());
+        assertArrayEquals(new double[] {near, near, nearPlus, 250.0, 250.0}, hits.distancesMeters());
+    }
+
+    @Test
+    void firstAfterResumesPastAMissingAnchor() {
+        GeoHits hits = new GeoHits(new long[] {5L, 8L, 7L, 3L, 9L}, new double[] {100.0, 100.0, 120.0, 250.0, 250.0});
+
+        assertEquals(2, hits.firstAfter(100.0, 8L));
+        // Anchor 6 is gone: resume with 8, the next hit in (distance, id) order
+        assertEquals(1, hits.firstAfter(100.0, 6L));
+        assertEquals(4, hits.firstAfter(250.0, 4L));
+        assertEquals(5, hits.firstAfter(300.0, 1L));
+        assertEquals(0, hits.firstAfter(50.0, 1L));
+    }
+}
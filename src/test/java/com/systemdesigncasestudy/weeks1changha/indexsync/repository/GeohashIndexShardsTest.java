@@ -0,0 +1,62 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeohashIndexShardsTest {
+
+    private static final GeohashIndexShard PRIMARY = new GeohashIndexShard("primary", "geohash_index", null);
+    private static final GeohashIndexShard HOT = new GeohashIndexShard("hot", "geohash_index_hot", null);
+
+    @Test
+    void firstShardIsQueriedOnTheCallingThread() {
+        try (GeohashIndexShards shards = new GeohashIndexShards(List.of(PRIMARY, HOT), "primary", 1, List.of())) {
+            Thread caller = Thread.currentThread();
+            List<Thread> threads = shards.scatter(List.of(PRIMARY, HOT), shard -> Thread.currentThread());
+
+            assertEquals(caller, threads.get(0));
+            assertNotEquals(caller, threads.get(1));
+        }
+    }
+
+    @Test
+    void requestsProgressWhileTheScatterPoolIsBusy() throws InterruptedException {
+        try (GeohashIndexShards shards = new GeohashIndexShards(List.of(PRIMARY, HOT), "primary", 1, List.of())) {
+            // Another request holds the only scatter thread
+            CountDownLatch release = new CountDownLatch(1);
+            Thread busy = new Thread(() -> shards.scatter(List.of(PRIMARY, HOT), shard -> {
+                if (shard.equals(HOT)) {
+                    await(release);
+                }
+                return shard.name();
+            }));
+            busy.start();
+
+            List<String> results = shards.scatter(List.of(HOT, PRIMARY), shard -> {
+                if (shard.equals(HOT)) {
+                    // The first shard ran here even though the pool thread is taken
+                    release.countDown();
+                }
+                return shard.name();
+            });
+            assertEquals(List.of("hot", "primary"), results);
+            busy.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(busy.isAlive());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryChangeLogRepositoryTest {
+
+    @Test
+    void pollsPartitionsInIdOrderAndSkipsProcessedEvents() {
+        InMemoryChangeLogRepository changeLog = new InMemoryChangeLogRepository();
+        for (long businessId = 1; businessId <= 10; businessId++) {
+            changeLog.append(businessId, ChangeType.UPDATED);
+        }
+
+        List<BusinessChangeEvent> even = changeLog.pollUnprocessed(3, 0, 2);
+        assertEquals(List.of(2L, 4L, 6L), even.stream().map(BusinessChangeEvent::businessId).toList());
+
+        // Processed out of order, as pushed batches can be
+        changeLog.markProcessed(List.of(even.get(1).id()));
+        List<BusinessChangeEvent> remaining = changeLog.pollUnprocessed(10, 0, 2);
+        assertEquals(List.of(2L, 6L, 8L, 10L), remaining.stream().map(BusinessChangeEvent::businessId).toList());
+        assertEquals(5, changeLog.pollUnprocessed(10, 1, 2).size());
+        assertEquals(10L, changeLog.maxId());
+    }
+
+    @Test
+    void dropsFullyProcessedSegments() {
+        InMemoryChangeLogRepository changeLog = new InMemoryChangeLogRepository();
+        int total = InMemoryChangeLogRepository.SEGMENT_SIZE * 5 + 10;
+        for (long businessId = 1; businessId <= total; businessId++) {
+            changeLog.append(businessId, ChangeType.CREATED);
+        }
+        assertEquals(6, changeLog.retainedSegments());
+
+        List<BusinessChangeEvent> batch;
+        while (!(batch = changeLog.pollUnprocessed(700, 0, 1)).isEmpty()) {
+            changeLog.markProcessed(batch.stream().map(BusinessChangeEvent::id).toList());
+        }
+        assertEquals(1, changeLog.retainedSegments());
+
+        BusinessChangeEvent next = changeLog.append(1L, ChangeType.UPDATED);
+        assertEquals(total + 1L, next.id());
+        assertEquals(List.of(next), changeLog.pollUnprocessed(10, 0, 1));
+        assertTrue(changeLog.pollUnprocessed(10, 0, 2).isEmpty());
+    }
+}
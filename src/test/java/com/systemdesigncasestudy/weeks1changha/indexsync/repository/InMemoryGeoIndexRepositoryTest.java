@@ -0,0 +1,207 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.repository;
+
+import com.systemdesigncasestudy.weeks1changha.geo.GeoDistance;
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryGeoIndexRepositoryTest {
+
+    @Test
+    void findByRadiusMatchesBruteForceAcrossMerges() {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(64);
+        Map<Long, double[]> points = new HashMap<>();
+        Random random = new Random(42);
+
+        for (long id = 1; id <= 3000; id++) {
+            double latitude = 37.49 + random.nextDouble() * 0.02;
+            double longitude = 127.02 + random.nextDouble() * 0.02;
+            index.add(id, latitude, longitude);
+            points.put(id, new double[] {latitude, longitude});
+        }
+        for (long id = 1; id <= 3000; id += 7) {
+            index.remove(id);
+            points.remove(id);
+        }
+        for (long id = 2; id <= 3000; id += 11) {
+            double latitude = 37.49 + random.nextDouble() * 0.02;
+            double longitude = 127.02 + random.nextDouble() * 0.02;
+            index.add(id, latitude, longitude);
+            points.put(id, new double[] {latitude, longitude});
+        }
+
+        for (int radius : new int[] {100, 500, 1000, 5000}) {
+            List<Long> expected = bruteForce(points, 37.4991, 127.0313, radius);
+            assertEquals(expected, ids(index.findByRadius(37.4991, 127.0313, radius, 5000)));
+            assertEquals(expected.size(), index.countByRadius(37.4991, 127.0313, radius));
+        }
+    }
+
+    @Test
+    void findByRadiusReturnsOnlyTheNearestUpToLimit() {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(16);
+        for (long id = 1; id <= 100; id++) {
+            index.add(id, 37.4991 + id * 0.00001, 127.0313);
+        }
+
+        GeoHits hits = index.findByRadius(37.4991, 127.0313, 1000, 3);
+        assertEquals(List.of(1L, 2L, 3L), hits.idsBetween(0, hits.size()));
+        assertTrue(hits.distance(0) < hits.distance(1) && hits.distance(1) < hits.distance(2));
+        assertEquals(100, index.countByRadius(37.4991, 127.0313, 1000));
+    }
+
+    @Test
+    void findByRadiusCoversNeighborCellsAcrossBoundaries() {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(4096);
+        index.add(1L, 0.0001, 179.9999);
+        index.add(2L, -0.0001, -179.9999);
+        index.add(3L, 0.01, 0.01);
+
+        // Mirrored across the antimeridian: equally far only up to rounding, so either may come first
+        assertEquals(Set.of(1L, 2L), Set.copyOf(ids(index.findByRadius(0d, 180d, 100, 10))));
+        assertEquals(List.of(3L), ids(index.findByRadius(0.009, 0.009, 500, 10)));
+    }
+
+    @Test
+    void findInBoxReturnsExactlyThePointsOfAGeohashCell() {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(128);
+        Map<Long, double[]> points = new HashMap<>();
+        Random random = new Random(7);
+        for (long id = 1; id <= 2000; id++) {
+            double latitude = 37.48 + random.nextDouble() * 0.05;
+            double longitude = 127.01 + random.nextDouble() * 0.05;
+            index.add(id, latitude, longitude);
+            points.put(id, new double[] {latitude, longitude});
+        }
+
+        String cell = GeohashUtils.encode(37.4991, 127.0313, 6);
+        Set<Long> expected = new TreeSet<>();
+        points.forEach((id, point) -> {
+            if (GeohashUtils.encode(point[0], point[1], 6).equals(cell)) {
+                expected.add(id);
+            }
+        });
+
+        GeohashUtils.CellBounds bounds = GeohashUtils.bounds(cell);
+        GeoPoints found = index.findInBox(
+                bounds.minLatitude(), bounds.minLongitude(), bounds.maxLatitude(), bounds.maxLongitude(), 5000);
+        Set<Long> actual = new TreeSet<>();
+        for (long id : found.ids()) {
+            actual.add(id);
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void findPositionsSeesOverlayAndSnapshot() {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(2);
+        index.add(1L, 37.1, 127.1);
+        index.add(2L, 37.2, 127.2); // merged into the snapshot
+        index.add(3L, 37.3, 127.3);
+        index.add(1L, 37.4, 127.4);
+        index.remove(2L);
+
+        GeoPoints positions = index.findPositions(List.of(1L, 2L, 3L, 4L));
+        Map<Long, Double> latitudes = new HashMap<>();
+        for (int i = 0; i < positions.size(); i++) {
+            latitudes.put(positions.ids()[i], positions.latitudes()[i]);
+        }
+        assertEquals(Map.of(1L, 37.4, 3L, 37.3), latitudes);
+    }
+
+    @Test
+    void hasDataReflectsLiveEntries() {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(2);
+        assertFalse(index.hasData());
+
+        index.add(1L, 37.4991, 127.0313);
+        assertTrue(index.hasData());
+
+        index.remove(1L);
+        assertEquals(0, index.findByRadius(37.4991, 127.0313, 500, 10).size());
+    }
+
+    @Test
+    void restoreSnapshotReturnsTheSavedIndexAndChangeLogId() throws IOException {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(64);
+        Random random = new Random(11);
+        for (long id = 1; id <= 1000; id++) {
+            index.add(id, 37.49 + random.nextDouble() * 0.02, 127.02 + random.nextDouble() * 0.02);
+        }
+        index.remove(5L); // still in the overlay when the snapshot is written
+
+        Path file = Files.createTempFile("geo-index", ".snapshot");
+        try {
+            index.writeSnapshot(file, 4242L);
+            InMemoryGeoIndexRepository restored = new InMemoryGeoIndexRepository(64);
+            assertEquals(4242L, restored.restoreSnapshot(file));
+
+            for (int radius : new int[] {100, 1000}) {
+                assertEquals(ids(index.findByRadius(37.4991, 127.0313, radius, 5000)),
+                        ids(restored.findByRadius(37.4991, 127.0313, radius, 5000)));
+            }
+            assertEquals(0, restored.findPositions(List.of(5L)).size());
+            assertEquals(1, restored.findPositions(List.of(6L)).size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void restoreSnapshotRejectsACorruptedFile() throws IOException {
+        InMemoryGeoIndexRepository index = new InMemoryGeoIndexRepository(64);
+        for (long id = 1; id <= 100; id++) {
+            index.add(id, 37.49 + id * 0.0001, 127.02 + id * 0.0001);
+        }
+
+        Path file = Files.createTempFile("geo-index", ".snapshot");
+        try {
+            index.writeSnapshot(file, 7L);
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 100] ^= 0x01; // one bit of a longitude
+            Files.write(file, bytes);
+
+            InMemoryGeoIndexRepository restored = new InMemoryGeoIndexRepository(64);
+            assertThrows(IOException.class, () -> restored.restoreSnapshot(file));
+            assertFalse(restored.hasData());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<Long> ids(GeoHits hits) {
+        return hits.idsBetween(0, hits.size());
+    }
+
+    private static List<Long> bruteForce(Map<Long, double[]> points, double latitude, double longitude, int radius) {
+        List<Map.Entry<Long, Double>> matches = new ArrayList<>();
+        points.forEach((id, point) -> {
+            double distance = GeoDistance.haversineMeters(latitude, longitude, point[0], point[1]);
+            if (distance <= radius) {
+                matches.add(Map.entry(id, distance));
+            }
+        });
+        matches.sort(Comparator.comparingDouble(Map.Entry::getValue));
+        List<Long> ids = new ArrayList<>();
+        for (Map.Entry<Long, Double> match : matches) {
+            ids.add(match.getKey());
+        }
+        return ids;
+    }
+}
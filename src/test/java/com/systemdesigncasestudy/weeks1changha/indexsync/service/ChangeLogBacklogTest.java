@@ -0,0 +1,37 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChangeLogBacklogTest {
+
+    private final ChangeLogBacklog backlog = new ChangeLogBacklog(new SimpleMeterRegistry(), 1);
+
+    @Test
+    void aPushedBatchOfNewerEventsKeepsTheOldestPending() {
+        // The catch-up poll saw event 5 first, but only a batch of 3 fitted
+        backlog.onHighWater(9L);
+        backlog.onPolled(0, List.of(event(5L), event(6L), event(7L)), 9L);
+        backlog.onProcessed(0, List.of(event(5L), event(6L), event(7L)));
+        backlog.onMorePending(0, event(7L));
+        assertEquals(2L, backlog.backlog(0));
+
+        // Event 9 was pushed and processed; event 8 still waits for the next poll
+        backlog.onProcessed(0, List.of(event(9L)));
+        assertEquals(2L, backlog.backlog(0));
+
+        backlog.onPolled(0, List.of(event(8L)), 9L);
+        backlog.onProcessed(0, List.of(event(8L)));
+        assertEquals(0L, backlog.backlog(0));
+    }
+
+    private static BusinessChangeEvent event(long id) {
+        return new BusinessChangeEvent(id, id, ChangeType.UPDATED, Instant.now());
+    }
+}
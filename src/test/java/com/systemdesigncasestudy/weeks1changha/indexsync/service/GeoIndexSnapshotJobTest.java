@@ -0,0 +1,88 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeoIndexRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class GeoIndexSnapshotJobTest {
+
+    @Test
+    void snapshotWaitsOutWritesThatMayHoldLowerIds() throws IOException {
+        InMemoryGeoIndexRepository geoIndex = new InMemoryGeoIndexRepository(64);
+        geoIndex.add(1L, 37.5, 127.0);
+        InMemoryChangeLogRepository changeLog = new InMemoryChangeLogRepository();
+        processed(changeLog, changeLog.append(1L, ChangeType.CREATED));
+        ChangeLogWriteTracker writes = new ChangeLogWriteTracker();
+        Path file = Files.createTempFile("geo-index", ".snapshot");
+        Files.delete(file);
+        try {
+            GeoIndexSnapshotJob job = job(geoIndex, changeLog, writes, file);
+
+            long running = writes.begin();
+            job.run();
+            assertFalse(Files.exists(file));
+
+            writes.end(running);
+            processed(changeLog, changeLog.append(2L, ChangeType.CREATED));
+            job.run();
+            assertEquals(2L, new InMemoryGeoIndexRepository(64).restoreSnapshot(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void restoreDiscardsASnapshotWhoseEventsWereDeleted() throws IOException {
+        InMemoryGeoIndexRepository saved = new InMemoryGeoIndexRepository(64);
+        saved.add(1L, 37.5, 127.0);
+        // A full processed segment is dropped, like rows deleted by the retention job
+        InMemoryChangeLogRepository changeLog = new InMemoryChangeLogRepository();
+        List<Long> businessIds = new ArrayList<>();
+        for (long id = 1; id <= 1024; id++) {
+            businessIds.add(id);
+        }
+        List<Long> eventIds = new ArrayList<>();
+        for (BusinessChangeEvent event : changeLog.appendAll(businessIds, ChangeType.CREATED)) {
+            eventIds.add(event.id());
+        }
+        changeLog.markProcessed(eventIds);
+        changeLog.append(1L, ChangeType.UPDATED);
+        assertEquals(1025L, changeLog.firstRetainedId());
+
+        Path file = Files.createTempFile("geo-index", ".snapshot");
+        try {
+            saved.writeSnapshot(file, 10L);
+            InMemoryGeoIndexRepository restored = new InMemoryGeoIndexRepository(64);
+            job(restored, changeLog, new ChangeLogWriteTracker(), file).start();
+
+            assertFalse(restored.hasData());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static GeoIndexSnapshotJob job(
+            InMemoryGeoIndexRepository geoIndex,
+            InMemoryChangeLogRepository changeLog,
+            ChangeLogWriteTracker writes,
+            Path file) {
+        // Replay is not reached by these tests
+        return new GeoIndexSnapshotJob(
+                geoIndex, changeLog, null, writes, new SimpleMeterRegistry(), true, file.toString(), 50L, 72L);
+    }
+
+    private static void processed(InMemoryChangeLogRepository changeLog, BusinessChangeEvent event) {
+        changeLog.markProcessed(List.of(event.id()));
+    }
+}
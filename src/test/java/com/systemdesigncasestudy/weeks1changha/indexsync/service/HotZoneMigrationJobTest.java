@@ -0,0 +1,238 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
+import com.systemdesigncasestudy.weeks1changha.business.domain.BusinessStatus;
+import com.systemdesigncasestudy.weeks1changha.business.repository.InMemoryBusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.cache.CacheFactory;
+import com.systemdesigncasestudy.weeks1changha.cache.GeoCellCache;
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfig;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfigService;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneTrie;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.ZoneMigration;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexShard;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeohashIndexShards;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeoIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlGeohashIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlHotZoneConfigRepository;
+import com.systemdesigncasestudy.weeks1changha.support.RecordingTransactionManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HotZoneMigrationJobTest {
+
+    // Gangnam Station
+    private static final double LATITUDE = 37.4979;
+    private static final double LONGITUDE = 127.0276;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemoryBusinessRepository businessRepository = new InMemoryBusinessRepository();
+    private final IndexTable primaryTable = new IndexTable();
+    private final IndexTable hotTable = new IndexTable();
+    private final GeohashIndexShards shards = new GeohashIndexShards(List.of(
+            new GeohashIndexShard("primary", "geohash_index", primaryTable),
+            new GeohashIndexShard("hot", "geohash_index_hot", hotTable)), "primary", 1, List.of());
+    private final ConfigRows configRows = new ConfigRows(new HotZoneConfig("wydm", "Gangnam", 500, true, "hot"));
+    private final HotZoneConfigService hotZoneConfigService =
+            new HotZoneConfigService(configRows, new TransactionTemplate(new RecordingTransactionManager()));
+    private final MysqlGeohashIndexRepository geohashIndexRepository =
+            new MysqlGeohashIndexRepository(shards, hotZoneConfigService, new InMemoryGeoIndexRepository(4096));
+
+    @Test
+    void droppedZoneIsMovedToTheDefaultShardAcrossARestart() {
+        // Five businesses at one spot share a geohash, so the scan pages on business_id alone
+        String geohash = GeohashUtils.encode(LATITUDE, LONGITUDE, 12);
+        for (int i = 0; i < 5; i++) {
+            Business business = new Business(businessRepository.nextId(), 1L, "shop", "cafe", null, "Seoul",
+                    LATITUDE, LONGITUDE, geohash, BusinessStatus.ACTIVE, Instant.EPOCH, Instant.EPOCH);
+            businessRepository.save(business);
+            hotTable.rows.put(business.id(), geohash);
+        }
+        primaryTable.rows.put(100L, "wydq1");
+
+        configRows.zones = List.of();
+        hotZoneConfigService.refreshConfig();
+        assertEquals(List.of("wydm"), configRows.migrations.get(0).prefixes());
+
+        // The primary shard has nothing under the prefix, then one chunk of the hot shard
+        HotZoneMigrationJob job = job();
+        job.run();
+        job.run();
+        assertEquals(new ZoneMigration.Cursor(0, "hot", geohash, 2L), configRows.migrations.get(0).cursor());
+
+        // A restarted instance picks up at the saved cursor instead of rescanning the shard
+        HotZoneMigrationJob restarted = job();
+        for (int tick = 0; tick < 5; tick++) {
+            restarted.run();
+        }
+
+        assertEquals(List.of(new ScanFrom("", 0L)), primaryTable.scans);
+        assertEquals(List.of(new ScanFrom("", 0L), new ScanFrom(geohash, 2L), new ScanFrom(geohash, 4L)),
+                hotTable.scans);
+        assertEquals(Map.of(), hotTable.rows);
+        assertEquals(Map.of(1L, geohash, 2L, geohash, 3L, geohash, 4L, geohash, 5L, geohash, 100L, "wydq1"),
+                primaryTable.rows);
+        assertEquals(List.of(), configRows.migrations);
+        assertEquals(1, hotZoneConfigService.zonesForReads().size());
+        assertEquals(5.0, meterRegistry.counter("proximity.indexsync.zone.migration.moved").count());
+    }
+
+    private HotZoneMigrationJob job() {
+        CacheFactory cacheFactory = new CacheFactory(meterRegistry);
+        IndexSyncService indexSyncService = new IndexSyncService(
+                new InMemoryChangeLogRepository(),
+                businessRepository,
+                geohashIndexRepository,
+                new InMemoryGeoIndexRepository(4096),
+                new GeoCellCache(cacheFactory, 300, 5, 20000, 100_000),
+                new BusinessDensityMap(businessRepository),
+                new ChangeLogBacklog(meterRegistry, 1),
+                meterRegistry,
+                1);
+        return new HotZoneMigrationJob(hotZoneConfigService, configRows, geohashIndexRepository, shards,
+                indexSyncService, meterRegistry, true, 2, 0L);
+    }
+
+    private record ScanFrom(String afterGeohash, long afterBusinessId) {
+    }
+
+    /**
+     * One geohash_index table, answering the statements MysqlGeohashIndexRepository sends it.
+     */
+    private static final class IndexTable extends JdbcTemplate {
+
+        private final Map<Long, String> rows = new ConcurrentHashMap<>();
+        private final List<ScanFrom> scans = new ArrayList<>();
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (sql.startsWith("INSERT")) {
+                for (int i = 0; i < args.length; i += 2) {
+                    rows.put((Long) args[i + 1], (String) args[i]);
+                }
+                return args.length / 2;
+            }
+            int deleted = 0;
+            for (Object businessId : args) {
+                if (rows.remove((Long) businessId) != null) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+
+        /**
+         * The findMisplaced keyset scan: prefix, (afterGeohash, afterBusinessId), limit.
+         */
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) {
+            String prefix = ((String) args[0]).replace("%", "");
+            String afterGeohash = (String) args[1];
+            long afterBusinessId = (Long) args[3];
+            int limit = (Integer) args[4];
+            scans.add(new ScanFrom(afterGeohash, afterBusinessId));
+            List<Map.Entry<Long, String>> matches = rows.entrySet().stream()
+                    .filter(row -> row.getValue().startsWith(prefix))
+                    .filter(row -> row.getValue().compareTo(afterGeohash) > 0
+                            || (row.getValue().equals(afterGeohash) && row.getKey() > afterBusinessId))
+                    .sorted(Comparator.comparing(Map.Entry<Long, String>::getValue)
+                            .thenComparing(Map.Entry::getKey))
+                    .limit(limit)
+                    .toList();
+            for (Map.Entry<Long, String> row : matches) {
+                try {
+                    handler.processRow(row(row.getValue(), row.getKey()));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        private static ResultSet row(String geohash, long businessId) {
+            Map<String, Object> columns = Map.of("geohash", geohash, "business_id", businessId);
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                    (proxy, method, methodArgs) -> columns.get((String) methodArgs[0]));
+        }
+    }
+
+    /**
+     * hot_zone_config, hot_zone_routing and hot_zone_migration in memory.
+     */
+    private static final class ConfigRows extends MysqlHotZoneConfigRepository {
+
+        private List<HotZoneConfig> zones;
+        private Map<String, String> routing = new TreeMap<>();
+        private final List<ZoneMigration> migrations = new ArrayList<>();
+        private long nextMigrationId = 1L;
+
+        ConfigRows(HotZoneConfig zone) {
+            super(null);
+            this.zones = List.of(zone);
+            routing.put(zone.geohashPrefix(), zone.shard());
+        }
+
+        @Override
+        public List<HotZoneConfig> findAllActive() {
+            return zones;
+        }
+
+        @Override
+        public Optional<Map<String, String>> findRecordedRoutingForUpdate() {
+            return Optional.of(routing);
+        }
+
+        @Override
+        public void saveRecordedRouting(Map<String, String> routing) {
+            this.routing = routing;
+        }
+
+        @Override
+        public void insertMigration(Map<String, String> previousRouting, List<String> prefixes) {
+            List<HotZoneConfig> previous = new ArrayList<>();
+            previousRouting.forEach((prefix, shard) -> previous.add(new HotZoneConfig(prefix, null, 0, true, shard)));
+            migrations.add(new ZoneMigration(nextMigrationId++, HotZoneTrie.of(previous), List.copyOf(prefixes),
+                    ZoneMigration.Cursor.START, Instant.now()));
+        }
+
+        @Override
+        public List<ZoneMigration> findPendingMigrations() {
+            return List.copyOf(migrations);
+        }
+
+        @Override
+        public boolean updateCursor(long migrationId, ZoneMigration.Cursor expected, ZoneMigration.Cursor next) {
+            for (int i = 0; i < migrations.size(); i++) {
+                ZoneMigration migration = migrations.get(i);
+                if (migration.id() == migrationId && migration.cursor().equals(expected)) {
+                    migrations.set(i, new ZoneMigration(migration.id(), migration.previous(), migration.prefixes(),
+                            next, migration.createdAt()));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean deleteMigration(long migrationId, ZoneMigration.Cursor expected) {
+            return migrations.removeIf(migration -> migration.id() == migrationId && migration.cursor().equals(expected));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
+import com.systemdesigncasestudy.weeks1changha.business.domain.BusinessStatus;
+import com.systemdesigncasestudy.weeks1changha.business.repository.InMemoryBusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.cache.CacheFactory;
+import com.systemdesigncasestudy.weeks1changha.cache.GeoCellCache;
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.GeohashIndexEntry;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeoIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeohashIndexRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexReconciliationJobTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemoryBusinessRepository businessRepository = new InMemoryBusinessRepository();
+    private final InMemoryGeoIndexRepository geoIndex = new InMemoryGeoIndexRepository(4096);
+    private final GeohashIndexWithGeoIndex geohashIndex = new GeohashIndexWithGeoIndex(geoIndex);
+
+    @Test
+    void geoIndexMembersWithoutABusinessAreRemoved() {
+        for (int i = 0; i < 5; i++) {
+            Business business = business(businessRepository.nextId(), 37.4979 + i * 0.001, 127.0276);
+            businessRepository.save(business);
+            geohashIndex.upsert(business.geohash(), business.id());
+            geoIndex.add(business.id(), business.latitude(), business.longitude());
+        }
+        // Id leased but its business never saved (a rolled-back create), left in the geo index only
+        long orphan = businessRepository.nextId();
+        geoIndex.add(orphan, 37.5, 127.0);
+        // Beyond it, another business, so the orphan sits inside a chunk and not past the last one
+        Business last = business(businessRepository.nextId(), 37.51, 127.0);
+        businessRepository.save(last);
+        geohashIndex.upsert(last.geohash(), last.id());
+        geoIndex.add(last.id(), last.latitude(), last.longitude());
+
+        IndexReconciliationJob job = job(2);
+        for (int tick = 0; tick < 10; tick++) {
+            job.run();
+        }
+
+        assertEquals(1.0, meterRegistry.counter("proximity.indexsync.reconcile.drift",
+                "store", "geo_index", "kind", "orphan").count());
+        assertEquals(0, geoIndex.findPositions(List.of(orphan)).size());
+        assertEquals(6, geoIndex.findPositions(List.of(1L, 2L, 3L, 4L, 5L, last.id())).size());
+    }
+
+    private IndexReconciliationJob job(int chunkSize) {
+        CacheFactory cacheFactory = new CacheFactory(meterRegistry);
+        IndexSyncService indexSyncService = new IndexSyncService(
+                new InMemoryChangeLogRepository(),
+                businessRepository,
+                geohashIndex,
+                geoIndex,
+                new GeoCellCache(cacheFactory, 300, 5, 20000, 100_000),
+                new BusinessDensityMap(businessRepository),
+                new ChangeLogBacklog(meterRegistry, 1),
+                meterRegistry,
+                1);
+        return new IndexReconciliationJob(businessRepository, geohashIndex, geoIndex, indexSyncService, meterRegistry,
+                true, chunkSize, 3_600_000L, 0L, true);
+    }
+
+    private static Business business(long id, double latitude, double longitude) {
+        return new Business(id, 1L, "shop-" + id, "cafe", null, "Seoul", latitude, longitude,
+                GeohashUtils.encode(latitude, longitude, 12), BusinessStatus.ACTIVE, Instant.EPOCH, Instant.EPOCH);
+    }
+
+    /**
+     * Writes the geo index along with geohash_index, as the MySQL repository does.
+     */
+    private static final class GeohashIndexWithGeoIndex extends InMemoryGeohashIndexRepository {
+
+        private final InMemoryGeoIndexRepository geoIndex;
+
+        GeohashIndexWithGeoIndex(InMemoryGeoIndexRepository geoIndex) {
+            this.geoIndex = geoIndex;
+        }
+
+        @Override
+        public synchronized void applyBatch(List<GeohashIndexEntry> upserts, Collection<Long> deletedBusinessIds) {
+            super.applyBatch(upserts, deletedBusinessIds);
+            GeoPoints.Builder points = new GeoPoints.Builder(upserts.size());
+            for (GeohashIndexEntry entry : upserts) {
+                points.add(entry.businessId(), entry.latitude(), entry.longitude());
+            }
+            geoIndex.update(points.build(), deletedBusinessIds);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.systemdesigncasestudy.weeks1changha.indexsync.service;
+
+import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
+import com.systemdesigncasestudy.weeks1changha.business.domain.BusinessStatus;
+import com.systemdesigncasestudy.weeks1changha.business.repository.InMemoryBusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.cache.CacheFactory;
+import com.systemdesigncasestudy.weeks1changha.cache.GeoCellCache;
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.BusinessChangeEvent;
+import com.systemdesigncasestudy.weeks1changha.indexsync.domain.ChangeType;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoBulkLoad;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeoIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeohashIndexRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisGeoDataLoaderTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemoryBusinessRepository businessRepository = new InMemoryBusinessRepository();
+    private final RecordingChangeLogRepository changeLogRepository = new RecordingChangeLogRepository();
+    private final BusinessTable businessTable = new BusinessTable(businessRepository);
+    private final CheckpointingGeoIndex geoIndex = new CheckpointingGeoIndex();
+
+    @Test
+    void interruptedLoadResumesFromItsCheckpoint() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            businessRepository.save(business(businessRepository.nextId()));
+        }
+        // Two slices, (0, 5] and (5, 10]; the second fails after its first page of 6 and 7
+        businessTable.failAfterId = 7L;
+
+        assertThrows(ExecutionException.class, () -> loader().run());
+        assertEquals(Map.of(
+                "change-log-id", "0",
+                "max-id", "10",
+                "slices", "2",
+                "slice.0", "5",
+                "slice.1", "7"), geoIndex.checkpoint);
+        assertFalse(geoIndex.hasData());
+
+        // Written while the load was down; the resumed load must still replay it
+        changeLogRepository.append(3L, ChangeType.UPDATED);
+        businessTable.failAfterId = null;
+        businessTable.readAfterIds.clear();
+        geoIndex.staged.clear();
+
+        loader().run();
+
+        // Only the rest of the second slice is read again
+        assertEquals(List.of(7L, 9L), businessTable.readAfterIds);
+        assertEquals(List.of(8L, 9L, 10L), geoIndex.staged);
+        assertEquals(List.of(0L, 1L), changeLogRepository.replayedAfterIds);
+        assertTrue(geoIndex.checkpoint.isEmpty());
+        assertEquals(10, geoIndex.findPositions(LongStream.rangeClosed(1L, 10L).boxed().toList()).size());
+    }
+
+    private RedisGeoDataLoader loader() {
+        CacheFactory cacheFactory = new CacheFactory(meterRegistry);
+        IndexSyncService indexSyncService = new IndexSyncService(
+                changeLogRepository,
+                businessRepository,
+                new InMemoryGeohashIndexRepository(),
+                geoIndex,
+                new GeoCellCache(cacheFactory, 300, 5, 20000, 100_000),
+                new BusinessDensityMap(businessRepository),
+                new ChangeLogBacklog(meterRegistry, 1),
+                meterRegistry,
+                1);
+        return new RedisGeoDataLoader(businessTable, geoIndex, changeLogRepository, indexSyncService,
+                new SimpleMeterRegistry(), 2, 2);
+    }
+
+    private static Business business(long id) {
+        double latitude = 37.4979 + id * 0.001;
+        double longitude = 127.0276;
+        return new Business(id, 1L, "shop-" + id, "cafe", null, "Seoul", latitude, longitude,
+                GeohashUtils.encode(latitude, longitude, 12), BusinessStatus.ACTIVE, Instant.EPOCH, Instant.EPOCH);
+    }
+
+    /**
+     * Answers the loader's queries on the business table from the in-memory repository.
+     */
+    private static final class BusinessTable extends JdbcTemplate {
+
+        private final InMemoryBusinessRepository businessRepository;
+        private final List<Long> readAfterIds = Collections.synchronizedList(new ArrayList<>());
+        private volatile Long failAfterId;
+
+        BusinessTable(InMemoryBusinessRepository businessRepository) {
+            this.businessRepository = businessRepository;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            return requiredType.cast(businessRepository.maxAllocatedId());
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) {
+            long afterId = (Long) args[0];
+            long upperId = (Long) args[1];
+            int limit = (Integer) args[2];
+            if (failAfterId != null && afterId == failAfterId) {
+                throw new IllegalStateException("Communications link failure");
+            }
+            readAfterIds.add(afterId);
+            for (Business business : businessRepository.findAfter(afterId, limit)) {
+                if (business.id() > upperId) {
+                    break;
+                }
+                try {
+                    handler.processRow(row(business));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        private static ResultSet row(Business business) {
+            Map<String, Object> columns = Map.of(
+                    "id", business.id(),
+                    "latitude", business.latitude(),
+                    "longitude", business.longitude());
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                    (proxy, method, methodArgs) -> columns.get((String) methodArgs[0]));
+        }
+    }
+
+    /**
+     * Stages a load and keeps its checkpoint across loader runs, as the Redis bulk load does.
+     */
+    private static final class CheckpointingGeoIndex extends InMemoryGeoIndexRepository {
+
+        private final Map<String, String> checkpoint = new ConcurrentHashMap<>();
+        private final List<Long> staged = Collections.synchronizedList(new ArrayList<>());
+        private final Map<Long, double[]> stagedPoints = new ConcurrentHashMap<>();
+
+        CheckpointingGeoIndex() {
+            super(4096);
+        }
+
+        @Override
+        public GeoBulkLoad startBulkLoad() {
+            return new GeoBulkLoad() {
+                @Override
+                public Map<String, String> checkpoint() {
+                    return new HashMap<>(checkpoint);
+                }
+
+                @Override
+                public void saveCheckpoint(String field, String value) {
+                    checkpoint.put(field, value);
+                }
+
+                @Override
+                public void addAll(GeoPoints points) {
+                    for (int i = 0; i < points.size(); i++) {
+                        staged.add(points.ids()[i]);
+                        stagedPoints.put(points.ids()[i],
+                                new double[] {points.latitudes()[i], points.longitudes()[i]});
+                    }
+                }
+
+                @Override
+                public void commit() {
+                    GeoPoints.Builder points = new GeoPoints.Builder(stagedPoints.size());
+                    stagedPoints.forEach((id, position) -> points.add(id, position[0], position[1]));
+                    update(points.build(), List.of());
+                    stagedPoints.clear();
+                    checkpoint.clear();
+                }
+            };
+        }
+    }
+
+    private static final class RecordingChangeLogRepository extends InMemoryChangeLogRepository {
+
+        private final List<Long> replayedAfterIds = new ArrayList<>();
+
+        @Override
+        public synchronized List<BusinessChangeEvent> findAfter(long afterId, int limit) {
+            replayedAfterIds.add(afterId);
+            return super.findAfter(afterId, limit);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.systemdesigncasestudy.weeks1changha.search.service;
+
+import com.systemdesigncasestudy.weeks1changha.business.domain.Business;
+import com.systemdesigncasestudy.weeks1changha.business.domain.BusinessStatus;
+import com.systemdesigncasestudy.weeks1changha.business.repository.InMemoryBusinessRepository;
+import com.systemdesigncasestudy.weeks1changha.business.service.BusinessService;
+import com.systemdesigncasestudy.weeks1changha.cache.BusinessCache;
+import com.systemdesigncasestudy.weeks1changha.cache.CacheFactory;
+import com.systemdesigncasestudy.weeks1changha.cache.GeoCellCache;
+import com.systemdesigncasestudy.weeks1changha.cache.SearchSnapshotCache;
+import com.systemdesigncasestudy.weeks1changha.geo.GeohashUtils;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfig;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.HotZoneConfigService;
+import com.systemdesigncasestudy.weeks1changha.indexsync.config.ZoneMigration;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoHits;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.GeoPoints;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryChangeLogRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.InMemoryGeoIndexRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.repository.MysqlHotZoneConfigRepository;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.BusinessDensityMap;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeEventQueue;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeLogBacklog;
+import com.systemdesigncasestudy.weeks1changha.indexsync.service.ChangeLogWriteTracker;
+import com.systemdesigncasestudy.weeks1changha.search.dto.NearbySearchResponse;
+import com.systemdesigncasestudy.weeks1changha.support.RecordingTransactionManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchServiceTest {
+
+    // Gangnam Station
+    private static final double LATITUDE = 37.4979;
+    private static final double LONGITUDE = 127.0276;
+    private static final int MAX_POINTS = 2000;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemoryBusinessRepository businessRepository = new InMemoryBusinessRepository();
+    private final CountingGeoIndex geoIndex = new CountingGeoIndex();
+    private final CacheFactory cacheFactory = new CacheFactory(meterRegistry);
+    private final SearchService service = new SearchService(
+            geoIndex,
+            businessService(),
+            new SearchSnapshotCache(cacheFactory, 60, 100_000),
+            new GeoCellCache(cacheFactory, 300, 5, MAX_POINTS, 100_000),
+            new HotZoneConfigService(new NoHotZones(), new TransactionTemplate(new RecordingTransactionManager())),
+            new BusinessDensityMap(businessRepository),
+            meterRegistry,
+            20, 100, 5000, true, 0, 100);
+
+    @Test
+    void oneKilometerSearchInADenseAreaIsServedFromCachedCells() {
+        // 6000 businesses over about 6.7km x 6.7km; a precision-5 cell here holds more than MAX_POINTS
+        Random random = new Random(42L);
+        for (long id = 1; id <= 6000; id++) {
+            double latitude = LATITUDE + (random.nextDouble() - 0.5d) * 0.06d;
+            double longitude = LONGITUDE + (random.nextDouble() - 0.5d) * 0.076d;
+            businessRepository.save(new Business(id, 1L, "shop-" + id, "cafe", null, "Seoul", latitude, longitude,
+                    GeohashUtils.encode(latitude, longitude, 12), BusinessStatus.ACTIVE, Instant.EPOCH, Instant.EPOCH));
+            geoIndex.add(id, latitude, longitude);
+        }
+        int inRadius = geoIndex.countByRadius(LATITUDE, LONGITUDE, 1000);
+
+        NearbySearchResponse first = service.searchNearby(LATITUDE, LONGITUDE, 1000, 20, null);
+        double loaded = cellLookups("miss");
+        assertEquals(0, geoIndex.radiusQueries);
+        assertEquals(inRadius, first.total());
+        assertEquals(20, first.businesses().size());
+        assertTrue(loaded <= GeoCellCache.MAX_CELLS_PER_SEARCH, "cells loaded: " + loaded);
+
+        // The cells read cover a few times the circle, not the ~70x of nine precision-5 cells
+        int precision = GeohashUtils.precisionForCircle(LATITUDE, LONGITUDE, 1000, GeoCellCache.MAX_PRECISION,
+                GeoCellCache.MAX_CELLS_PER_SEARCH);
+        double coveredSquareMeters = 0d;
+        for (String cell : GeohashUtils.cellsCoveringCircle(LATITUDE, LONGITUDE, 1000, precision)) {
+            coveredSquareMeters += area(GeohashUtils.bounds(cell));
+        }
+        assertTrue(coveredSquareMeters < 4 * Math.PI * 1000 * 1000, "covered m2: " + coveredSquareMeters);
+
+        // The same search again reads its cells from the cache only
+        int boxQueries = geoIndex.boxQueries;
+        NearbySearchResponse second = service.searchNearby(LATITUDE, LONGITUDE, 1000, 20, null);
+        assertEquals(boxQueries, geoIndex.boxQueries);
+        assertEquals(0, geoIndex.radiusQueries);
+        assertEquals(loaded, cellLookups("miss"));
+        assertEquals(loaded, cellLookups("hit"));
+        assertEquals(first.businesses(), second.businesses());
+    }
+
+    private double cellLookups(String result) {
+        return meterRegistry.counter("proximity.search.cell.cache", "result", result).count();
+    }
+
+    private static double area(GeohashUtils.CellBounds bounds) {
+        double heightMeters = (bounds.maxLatitude() - bounds.minLatitude()) * 111_320d;
+        double widthMeters = (bounds.maxLongitude() - bounds.minLongitude()) * 111_320d
+                * Math.cos(Math.toRadians((bounds.minLatitude() + bounds.maxLatitude()) / 2));
+        return heightMeters * widthMeters;
+    }
+
+    private BusinessService businessService() {
+        RecordingTransactionManager transactions = new RecordingTransactionManager();
+        return new BusinessService(
+                businessRepository,
+                new InMemoryChangeLogRepository(),
+                new BusinessCache(cacheFactory, 60, 100),
+                new ChangeEventQueue(meterRegistry, new ChangeLogBacklog(meterRegistry, 1), true, 1, 100),
+                new ChangeLogWriteTracker(),
+                new TransactionTemplate(transactions),
+                meterRegistry);
+    }
+
+    private static final class CountingGeoIndex extends InMemoryGeoIndexRepository {
+
+        private int radiusQueries;
+        private int boxQueries;
+
+        CountingGeoIndex() {
+            super(4096);
+        }
+
+        @Override
+        public GeoHits findByRadius(double latitude, double longitude, double radiusMeters, int limit) {
+            radiusQueries++;
+            return super.findByRadius(latitude, longitude, radiusMeters, limit);
+        }
+
+        @Override
+        public GeoPoints findInBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                int limit) {
+            boxQueries++;
+            return super.findInBox(minLatitude, minLongitude, maxLatitude, maxLongitude, limit);
+        }
+    }
+
+    private static final class NoHotZones extends MysqlHotZoneConfigRepository {
+
+        NoHotZones() {
+            super(null);
+        }
+
+        @Override
+        public List<HotZoneConfig> findAllActive() {
+            return List.of();
+        }
+
+        @Override
+        public Optional<Map<String, String>> findRecordedRoutingForUpdate() {
+            return Optional.of(Map.of());
+        }
+
+        @Override
+        public List<ZoneMigration> findPendingMigrations() {
+            return List.of();
+        }
+    }
+}
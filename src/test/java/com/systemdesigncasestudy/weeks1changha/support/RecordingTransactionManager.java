@@ -0,0 +1,107 @@
+package com.systemdesigncasestudy.weeks1changha.support;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction manager without a database that records what a real one would do. Every open
+ * transaction holds a connection, including an outer one suspended by REQUIRES_NEW, so
+ * {@link #openTransactions()} is the number of pooled connections the calling thread holds.
+ * Like Spring's managers it starts a synchronization per transaction, suspending the outer
+ * one, and runs the after-commit callbacks only on commit.
+ */
+public class RecordingTransactionManager implements PlatformTransactionManager {
+
+    private final ThreadLocal<Deque<TransactionStatus>> open = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ThreadLocal<Deque<List<TransactionSynchronization>>> suspended = ThreadLocal.withInitial(ArrayDeque::new);
+    private final List<Integer> propagations = new CopyOnWriteArrayList<>();
+    private final List<TransactionStatus> committed = new CopyOnWriteArrayList<>();
+    private final List<TransactionStatus> rolledBack = new CopyOnWriteArrayList<>();
+    private final AtomicInteger maxOpenTransactions = new AtomicInteger();
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) {
+        TransactionStatus status = new SimpleTransactionStatus();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            suspended.get().push(TransactionSynchronizationManager.getSynchronizations());
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        open.get().push(status);
+        propagations.add(definition != null
+                ? definition.getPropagationBehavior()
+                : TransactionDefinition.PROPAGATION_REQUIRED);
+        maxOpenTransactions.accumulateAndGet(open.get().size(), Math::max);
+        return status;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) {
+        if (status.isRollbackOnly()) {
+            rollback(status);
+            return;
+        }
+        List<TransactionSynchronization> synchronizations = close(status);
+        committed.add(status);
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) {
+        List<TransactionSynchronization> synchronizations = close(status);
+        rolledBack.add(status);
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+
+    public int openTransactions() {
+        return open.get().size();
+    }
+
+    /**
+     * Innermost transaction of the calling thread, or null outside any transaction.
+     */
+    public TransactionStatus current() {
+        return open.get().peek();
+    }
+
+    public List<Integer> propagations() {
+        return propagations;
+    }
+
+    public List<TransactionStatus> committed() {
+        return committed;
+    }
+
+    public List<TransactionStatus> rolledBack() {
+        return rolledBack;
+    }
+
+    public int maxOpenTransactions() {
+        return maxOpenTransactions.get();
+    }
+
+    private List<TransactionSynchronization> close(TransactionStatus status) {
+        if (open.get().peek() != status) {
+            throw new IllegalStateException("transaction completed out of order");
+        }
+        open.get().pop();
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        List<TransactionSynchronization> outer = suspended.get().poll();
+        if (outer != null) {
+            TransactionSynchronizationManager.initSynchronization();
+            outer.forEach(TransactionSynchronizationManager::registerSynchronization);
+        }
+        return synchronizations;
+    }
+}